@@ -0,0 +1,165 @@
+package spamfilter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+// classifies a sequence of documents on an executor and hands the results to a ClassificationSink as they
+// complete, or in input order if requested. at most maxInFlight documents are being classified or waiting to be
+// delivered at any time, so the input can be arbitrarily long. an instance classifies a single batch
+public class BatchClassifier
+{
+	private SpamChecker checker;
+	private Executor executor;
+	private int maxInFlight;
+	private boolean preserveOrder;
+	private ClassificationSink sink;
+	private Semaphore inFlight;
+	private TreeMap<Integer, ClassifiedDocument> pendingDocuments;		// completed out of order, null if failed
+	private int nextIndex;
+	private Throwable failure;
+
+	public BatchClassifier(SpamChecker checker, Executor executor, int maxInFlight, boolean preserveOrder,
+			ClassificationSink sink)
+	{
+		if (maxInFlight < 1)
+		{
+			throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+		}
+		this.checker          = checker;
+		this.executor         = executor;
+		this.maxInFlight      = maxInFlight;
+		this.preserveOrder    = preserveOrder;
+		this.sink             = sink;
+		this.inFlight         = new Semaphore(maxInFlight);
+		this.pendingDocuments = new TreeMap<Integer, ClassifiedDocument>();
+		this.nextIndex        = 0;
+	}
+
+	// classifies every specified document and returns once all of them have been delivered to the sink. returns
+	// the number of documents classified. the first exception thrown by a classification or the sink is rethrown
+	// once the batch is drained, the other documents still being delivered
+	public int classify(final Iterator<Path> documentPaths) throws InterruptedException
+	{
+		return classifyMessages(new Iterator<MailMessage>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				return documentPaths.hasNext();
+			}
+
+			@Override
+			public MailMessage next()
+			{
+				return new MailMessage(documentPaths.next());
+			}
+		});
+	}
+
+	// same as classify for corpus messages, see MailCorpus. a message inside an mbox file is classified from its
+	// mapped bytes
+	public int classifyMessages(Iterator<MailMessage> messages) throws InterruptedException
+	{
+		int index = 0;
+		while (messages.hasNext())
+		{
+			final MailMessage message = messages.next();
+			final int documentIndex   = index++;
+			inFlight.acquire();
+			try
+			{
+				executor.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						ClassifiedDocument document = null;
+						try
+						{
+							document = checker.classifyDocument(message);
+						}
+						catch (IOException e)
+						{
+							fail(new UncheckedIOException(e));
+						}
+						catch (RuntimeException | Error e)
+						{
+							fail(e);
+						}
+						deliver(documentIndex, document);
+					}
+				});
+			}
+			catch (RejectedExecutionException e)
+			{
+				inFlight.release();
+				throw e;
+			}
+		}
+		// wait for every document to be delivered
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+		synchronized (this)
+		{
+			if (failure instanceof RuntimeException)
+			{
+				throw (RuntimeException)failure;
+			}
+			if (failure instanceof Error)
+			{
+				throw (Error)failure;
+			}
+		}
+		return index;
+	}
+
+	// hands the specified document, and in ordered mode any following documents that completed before it, to the
+	// sink. a null document stands for a failed classification and is skipped
+	private synchronized void deliver(int index, ClassifiedDocument document)
+	{
+		if (!preserveOrder)
+		{
+			deliverToSink(index, document);
+			return;
+		}
+		pendingDocuments.put(index, document);
+		while (!pendingDocuments.isEmpty() && pendingDocuments.firstKey() == nextIndex)
+		{
+			deliverToSink(nextIndex, pendingDocuments.remove(nextIndex));
+			++nextIndex;
+		}
+	}
+
+	private void deliverToSink(int index, ClassifiedDocument document)
+	{
+		try
+		{
+			if (document != null)
+			{
+				sink.accept(index, document);
+			}
+		}
+		catch (RuntimeException | Error e)
+		{
+			fail(e);
+		}
+		finally
+		{
+			inFlight.release();
+		}
+	}
+
+	private synchronized void fail(Throwable throwable)
+	{
+		if (failure == null)
+		{
+			failure = throwable;
+		}
+	}
+}
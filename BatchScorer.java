@@ -0,0 +1,179 @@
+package spamfilter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+// scores many documents at once against a model, every document given as the feature ids of its tokens, see
+// encode, so rescanning documents only takes a gather and a sum over the log probability columns of the model
+// instead of tokenizing and looking up every word. the ids of the words of the vocabulary come first, followed by
+// those of the bigrams of a model with bigrams. documents are scored one at a time by a plain loop unless the
+// Vector API is asked for and the jdk.incubator.vector module was added to the JVM (--add-modules
+// jdk.incubator.vector), in which case they are scored a vector of documents at a time, each lane summing the log
+// probabilities of one document, see VectorBatchScorer. both add the log probabilities of a document in the order
+// of its tokens starting from the log of the class probability, like DocumentScorer, so the scores are bit for bit
+// those classifyDocument returns. the JDK 17 Vector API does not compile gathers into gather instructions, which
+// makes the vectorized loop several times slower than the plain one there, so it is only worth asking for on a
+// JDK that does
+public class BatchScorer
+{
+	private static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector")
+																		.isPresent();
+	private final ModelSnapshot model;
+	private final boolean vectorized;
+	// the log probabilities of every word and then every bigram, followed by a 0 for the id of padding, which adds
+	// nothing to a score
+	private final double[] hamLogProbabilities;
+	private final double[] spamLogProbabilities;
+	private final double hamPriorScore;
+	private final double spamPriorScore;
+
+	// scores without the Vector API
+	public BatchScorer(ModelSnapshot model)
+	{
+		this(model, false);
+	}
+
+	// scores with the Vector API only if vectorize is set and it is available
+	public BatchScorer(ModelSnapshot model, boolean vectorize)
+	{
+		Vocabulary vocabulary     = model.getVocabulary();
+		BigramTable bigrams       = model.getBigrams();
+		int features              = vocabulary.size() + ((bigrams == null) ? 0 : bigrams.size());
+		this.model                = model;
+		this.vectorized           = vectorize && VECTOR_API_AVAILABLE;
+		this.hamLogProbabilities  = new double[features + 1];
+		this.spamLogProbabilities = new double[features + 1];
+		this.hamPriorScore        = Math.log10(model.getHamProbability());
+		this.spamPriorScore       = Math.log10(model.getSpamProbability());
+		for (int id = 0; id < vocabulary.size(); ++id)
+		{
+			hamLogProbabilities[id]  = vocabulary.getHamLogProbability(id);
+			spamLogProbabilities[id] = vocabulary.getSpamLogProbability(id);
+		}
+		for (int index = 0; bigrams != null && index < bigrams.size(); ++index)
+		{
+			hamLogProbabilities[vocabulary.size() + index]  = bigrams.getHamLogProbability(index);
+			spamLogProbabilities[vocabulary.size() + index] = bigrams.getSpamLogProbability(index);
+		}
+	}
+
+	// whether the jdk.incubator.vector module was added to the JVM
+	public static boolean isVectorApiAvailable()
+	{
+		return VECTOR_API_AVAILABLE;
+	}
+
+	public ModelSnapshot getModel()
+	{
+		return model;
+	}
+
+	public boolean isVectorized()
+	{
+		return vectorized;
+	}
+
+	// the ids of the features of the specified document found in the model, in the order DocumentScorer scores
+	// them: every token found in the vocabulary followed by its bigram with the previous token if the model has
+	// it. tokens outside the vocabulary add nothing to the scores and are left out. ids are only meaningful to this
+	// model, so documents must be encoded again once the model is retrained or reloaded
+	public int[] encode(CharSequence documentContents)
+	{
+		TokenIds ids = new TokenIds(model.getVocabulary(), model.getBigrams());
+		new DocumentTokenizer().tokenize(documentContents, ids);
+		return ids.toArray();
+	}
+
+	// same as encode(CharSequence) for the document read from the specified reader, which is not closed
+	public int[] encode(Reader reader) throws IOException
+	{
+		TokenIds ids = new TokenIds(model.getVocabulary(), model.getBigrams());
+		new DocumentTokenizer().tokenize(reader, ids);
+		return ids.toArray();
+	}
+
+	// sets hamScores[i] and spamScores[i] to the scores of documents[i], the log10 of the probabilities that it is
+	// ham and spam up to a common factor, like ClassifiedDocument.getHamProbability and getSpamProbability
+	public void score(int[][] documents, double[] hamScores, double[] spamScores)
+	{
+		if (hamScores.length < documents.length || spamScores.length < documents.length)
+		{
+			throw new IllegalArgumentException("Cannot hold the scores of " + documents.length + " documents in "
+												+ hamScores.length + " ham and " + spamScores.length + " spam scores");
+		}
+		if (vectorized)
+		{
+			VectorBatchScorer.score(hamLogProbabilities, spamLogProbabilities, hamPriorScore, spamPriorScore,
+									documents, hamScores, spamScores);
+		}
+		else
+		{
+			for (int i = 0; i < documents.length; ++i)
+			{
+				int[] document = documents[i];
+				double ham     = hamPriorScore;
+				double spam    = spamPriorScore;
+				for (int id : document)
+				{
+					ham  += hamLogProbabilities[id];
+					spam += spamLogProbabilities[id];
+				}
+				hamScores[i]  = ham;
+				spamScores[i] = spam;
+			}
+		}
+	}
+
+	// collects the feature ids of the tokens it receives
+	private static class TokenIds implements TokenSink
+	{
+		private Vocabulary vocabulary;
+		private BigramTable bigrams;
+		private int previousId;
+		private int[] ids;
+		private int size;
+
+		public TokenIds(Vocabulary vocabulary, BigramTable bigrams)
+		{
+			this.vocabulary = vocabulary;
+			this.bigrams    = bigrams;
+			this.previousId = -1;
+			this.ids        = new int[64];
+			this.size       = 0;
+		}
+
+		@Override
+		public void acceptToken(char[] characters, int offset, int length)
+		{
+			int id = vocabulary.find(characters, offset, length);
+			if (id != -1)
+			{
+				add(id);
+				if (bigrams != null && previousId != -1)
+				{
+					int bigram = bigrams.find(BigramTable.key(previousId, id));
+					if (bigram != -1)
+					{
+						add(vocabulary.size() + bigram);
+					}
+				}
+			}
+			previousId = id;
+		}
+
+		private void add(int id)
+		{
+			if (size == ids.length)
+			{
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+		public int[] toArray()
+		{
+			return Arrays.copyOf(ids, size);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package spamfilter;
+
+import java.util.Arrays;
+
+// frequencies and log10 conditional probabilities of word bigrams, pairs of words following each other in a
+// document. a bigram is keyed by the vocabulary ids of its two words packed into a long, see key, in an open
+// addressing table of primitive arrays, and like the words of a Vocabulary every bigram is given a dense index in
+// insertion order that its values are held at in parallel arrays. a bigram thus takes a few dozen bytes, with no
+// string or map entry of its own. the ids are those of the vocabulary the bigrams were counted or built with
+public class BigramTable
+{
+	private static final float MAX_LOAD = 0.5f;
+	private long[] slotKeys;
+	private int[] slots;					// index + 1 of the bigram in every slot, 0 for a free slot
+	private long[] keys;
+	private int[] hamFrequencies;
+	private int[] spamFrequencies;
+	private double[] hamLogProbabilities;
+	private double[] spamLogProbabilities;
+	private int size;
+
+	public BigramTable()
+	{
+		this(16);
+	}
+
+	public BigramTable(int expectedSize)
+	{
+		int capacity              = Math.max(expectedSize, 16);
+		this.slotKeys             = new long[tableSize(capacity)];
+		this.slots                = new int[slotKeys.length];
+		this.keys                 = new long[capacity];
+		this.hamFrequencies       = new int[capacity];
+		this.spamFrequencies      = new int[capacity];
+		this.hamLogProbabilities  = new double[capacity];
+		this.spamLogProbabilities = new double[capacity];
+		this.size                 = 0;
+	}
+
+	// the key of the bigram of the words with the specified ids, in that order
+	public static long key(int firstId, int secondId)
+	{
+		return ((long)firstId << 32) | (secondId & 0xFFFFFFFFL);
+	}
+
+	public static int getFirstId(long key)
+	{
+		return (int)(key >>> 32);
+	}
+
+	public static int getSecondId(long key)
+	{
+		return (int)key;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	// returns the index of the bigram with the specified key or -1 if it is not in the table
+	public int find(long key)
+	{
+		int mask = slots.length - 1;
+		for (int slot = hash(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask)
+		{
+			if (slotKeys[slot] == key)
+			{
+				return slots[slot] - 1;
+			}
+		}
+		return -1;
+	}
+
+	// returns the index of the bigram with the specified key, adding it with no frequencies if it is not in the
+	// table
+	public int add(long key)
+	{
+		int mask = slots.length - 1;
+		int slot = hash(key) & mask;
+		for (; slots[slot] != 0; slot = (slot + 1) & mask)
+		{
+			if (slotKeys[slot] == key)
+			{
+				return slots[slot] - 1;
+			}
+		}
+		if (size == keys.length)
+		{
+			int capacity         = size * 2;
+			keys                 = Arrays.copyOf(keys, capacity);
+			hamFrequencies       = Arrays.copyOf(hamFrequencies, capacity);
+			spamFrequencies      = Arrays.copyOf(spamFrequencies, capacity);
+			hamLogProbabilities  = Arrays.copyOf(hamLogProbabilities, capacity);
+			spamLogProbabilities = Arrays.copyOf(spamLogProbabilities, capacity);
+		}
+		int index      = size++;
+		keys[index]    = key;
+		slotKeys[slot] = key;
+		slots[slot]    = index + 1;
+		if (size > slots.length * MAX_LOAD)
+		{
+			rehash(slots.length * 2);
+		}
+		return index;
+	}
+
+	public long getKey(int index)
+	{
+		return keys[index];
+	}
+
+	public int getHamFrequency(int index)
+	{
+		return hamFrequencies[index];
+	}
+
+	public int getSpamFrequency(int index)
+	{
+		return spamFrequencies[index];
+	}
+
+	public void addFrequencies(int index, int hamFrequency, int spamFrequency)
+	{
+		hamFrequencies[index]  += hamFrequency;
+		spamFrequencies[index] += spamFrequency;
+	}
+
+	public double getHamLogProbability(int index)
+	{
+		return hamLogProbabilities[index];
+	}
+
+	public double getSpamLogProbability(int index)
+	{
+		return spamLogProbabilities[index];
+	}
+
+	// sets the log10 of both conditional probabilities of a bigram
+	public void setConditionalProbabilities(int index, double hamConditionalProbability,
+			double spamConditionalProbability)
+	{
+		hamLogProbabilities[index]  = Math.log10(hamConditionalProbability);
+		spamLogProbabilities[index] = Math.log10(spamConditionalProbability);
+	}
+
+	// the sum of the ham frequencies of every bigram
+	public long getTotalHamFrequency()
+	{
+		long total = 0;
+		for (int index = 0; index < size; ++index)
+		{
+			total += hamFrequencies[index];
+		}
+		return total;
+	}
+
+	// the sum of the spam frequencies of every bigram
+	public long getTotalSpamFrequency()
+	{
+		long total = 0;
+		for (int index = 0; index < size; ++index)
+		{
+			total += spamFrequencies[index];
+		}
+		return total;
+	}
+
+	// bytes taken by the arrays of the table
+	public long getMemoryUsage()
+	{
+		return (long)slotKeys.length * (Long.BYTES + Integer.BYTES)
+				+ (long)keys.length * (Long.BYTES + 2 * Integer.BYTES + 2 * Double.BYTES);
+	}
+
+	private void rehash(int tableSize)
+	{
+		slotKeys = new long[tableSize];
+		slots    = new int[tableSize];
+		int mask = tableSize - 1;
+		for (int index = 0; index < size; ++index)
+		{
+			int slot = hash(keys[index]) & mask;
+			while (slots[slot] != 0)
+			{
+				slot = (slot + 1) & mask;
+			}
+			slotKeys[slot] = keys[index];
+			slots[slot]    = index + 1;
+		}
+	}
+
+	// the smallest power of two holding the specified number of bigrams within MAX_LOAD
+	private static int tableSize(int capacity)
+	{
+		return Integer.highestOneBit((int)(capacity / MAX_LOAD) - 1) << 1;
+	}
+
+	// the MurmurHash3 mixer, so that the ids of both words spread over the low bits the slot is taken from
+	private static int hash(long key)
+	{
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+}
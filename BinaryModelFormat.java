@@ -0,0 +1,361 @@
+package spamfilter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// reads and writes SpamChecker models in a versioned binary format. all values are big-endian:
+//
+//   int        magic number "SPMB"
+//   int        format version
+//   double     ham probability
+//   double     spam probability
+//   int        ham word count
+//   int        spam word count
+//   int        vocabulary size (n)
+//   int        number of buckets of a hashed vocabulary, 0 for a vocabulary of words (from version 2)
+//   int, byte  length and UTF-8 bytes of the ham dataset path, length -1 and no bytes for no path (from version 3)
+//   int, byte  length and UTF-8 bytes of the spam dataset path, likewise
+//
+// followed in version 3 by the tables of the TermIndex of the vocabulary, the id of every word being its
+// position in the order of Vocabulary.getSortedIds. for a vocabulary of words, the tables of a TermDictionary:
+//
+//   int        number of slots (s), a power of two
+//   int[s]     id + 1 of the term in every slot, 0 for an empty slot
+//   int[n]     hash of every term
+//   int[n + 1] offset of every term in the term block, followed by the end of the block
+//   char[]     term block holding the characters of every term
+//
+// and for a hashed vocabulary the bucket of every id, int[n]. up to version 2 the terms are instead stored as
+//
+//   int        length of the term block in bytes
+//   int[n + 1] offset of every term in the term block, followed by the end of the block
+//   byte[]     term block holding the UTF-8 bytes of every term
+//
+// and added to a new index one by one. then come the columns of the vocabulary in the same order:
+//
+//   int[n]     ham frequencies
+//   int[n]     spam frequencies
+//   double[n]  ham conditional probabilities
+//   double[n]  spam conditional probabilities
+//   double[n]  ham log10 conditional probabilities (from version 3)
+//   double[n]  spam log10 conditional probabilities (from version 3)
+//   long       CRC32 checksum of every preceding byte
+//
+// a version 3 model is read with bulk copies of the mapped tables and columns into the arrays of the vocabulary,
+// with no term hashed, decoded or added one at a time and no logarithm computed
+public class BinaryModelFormat
+{
+	public static final int MAGIC_NUMBER = 0x53504D42;
+	public static final int VERSION      = 3;
+
+	// maps the binary model file at the specified path, verifies its checksum and decodes its contents
+	public static ModelSnapshot read(String modelPath) throws IOException
+	{
+		RandomAccessFile modelFile = new RandomAccessFile(modelPath, "r");
+		try
+		{
+			FileChannel channel = modelFile.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException("Model file is too large: " + modelPath);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			verifyChecksum(buffer, modelPath);
+			return decode(buffer, modelPath);
+		}
+		finally
+		{
+			modelFile.close();
+		}
+	}
+
+	// checks if the file at the specified path starts with the binary model magic number
+	public static boolean isBinaryModel(String modelPath)
+	{
+		try
+		{
+			DataInputStream input = new DataInputStream(new FileInputStream(modelPath));
+			try
+			{
+				return input.readInt() == MAGIC_NUMBER;
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+
+	// writes the specified model to the specified path in one buffered pass
+	public static void write(String exportFilePath, ModelSnapshot model) throws IOException
+	{
+		// the words are written in sorted order, so their index is rebuilt with them added in that order
+		Vocabulary vocabulary = model.getVocabulary().withWords(model.getVocabulary().getSortedIds());
+		BufferedOutputStream bufferedOutput = new BufferedOutputStream(new FileOutputStream(exportFilePath, false));
+		try
+		{
+			CheckedOutputStream checkedOutput = new CheckedOutputStream(bufferedOutput, new CRC32());
+			DataOutputStream output           = new DataOutputStream(checkedOutput);
+			output.writeInt(MAGIC_NUMBER);
+			output.writeInt(VERSION);
+			output.writeDouble(model.getHamProbability());
+			output.writeDouble(model.getSpamProbability());
+			output.writeInt(model.getHamWordCount());
+			output.writeInt(model.getSpamWordCount());
+			output.writeInt(vocabulary.size());
+			output.writeInt(vocabulary.getHashBuckets());
+			writeString(output, model.getHamDatasetPath());
+			writeString(output, model.getSpamDatasetPath());
+			writeTermIndex(output, vocabulary.getWords());
+			for (int classIndex = Vocabulary.HAM_CLASS; classIndex <= Vocabulary.SPAM_CLASS; ++classIndex)
+			{
+				for (int id = 0; id < vocabulary.size(); ++id)
+				{
+					output.writeInt(vocabulary.getFrequency(classIndex, id));
+				}
+			}
+			for (int classIndex = Vocabulary.HAM_CLASS; classIndex <= Vocabulary.SPAM_CLASS; ++classIndex)
+			{
+				for (int id = 0; id < vocabulary.size(); ++id)
+				{
+					output.writeDouble(vocabulary.getConditionalProbability(classIndex, id));
+				}
+			}
+			for (int classIndex = Vocabulary.HAM_CLASS; classIndex <= Vocabulary.SPAM_CLASS; ++classIndex)
+			{
+				for (int id = 0; id < vocabulary.size(); ++id)
+				{
+					output.writeDouble(vocabulary.getLogProbability(classIndex, id));
+				}
+			}
+			output.flush();
+			// the checksum itself is written past the checked stream
+			new DataOutputStream(bufferedOutput).writeLong(checkedOutput.getChecksum().getValue());
+		}
+		finally
+		{
+			bufferedOutput.close();
+		}
+	}
+
+	private static void writeTermIndex(DataOutputStream output, TermIndex words) throws IOException
+	{
+		if (words instanceof HashedTermIndex)
+		{
+			for (int id = 0; id < words.size(); ++id)
+			{
+				output.writeInt(((HashedTermIndex)words).getBucket(id));
+			}
+			return;
+		}
+		TermDictionary dictionary = (TermDictionary)words;
+		int[] slots               = dictionary.getSlots();
+		output.writeInt(slots.length);
+		for (int slot : slots)
+		{
+			output.writeInt(slot);
+		}
+		int[] termHashes = dictionary.getTermHashes();
+		for (int id = 0; id < dictionary.size(); ++id)
+		{
+			output.writeInt(termHashes[id]);
+		}
+		int[] termOffsets = dictionary.getTermOffsets();
+		for (int id = 0; id <= dictionary.size(); ++id)
+		{
+			output.writeInt(termOffsets[id]);
+		}
+		char[] termCharacters = dictionary.getTermCharacters();
+		for (int i = 0; i < termOffsets[dictionary.size()]; ++i)
+		{
+			output.writeChar(termCharacters[i]);
+		}
+	}
+
+	// writes the length and UTF-8 bytes of the specified string, or a length of -1 for null
+	private static void writeString(DataOutputStream output, String string) throws IOException
+	{
+		if (string == null)
+		{
+			output.writeInt(-1);
+			return;
+		}
+		byte[] encodedString = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(encodedString.length);
+		output.write(encodedString);
+	}
+
+	private static void verifyChecksum(MappedByteBuffer buffer, String modelPath) throws IOException
+	{
+		if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC_NUMBER)
+		{
+			throw new IOException("Not a binary model file: " + modelPath);
+		}
+		if (buffer.getInt(4) < 1 || buffer.getInt(4) > VERSION)
+		{
+			throw new IOException("Unsupported binary model version " + buffer.getInt(4) + ": " + modelPath);
+		}
+		ByteBuffer checkedBytes = buffer.duplicate();
+		checkedBytes.limit(buffer.limit() - 8);
+		CRC32 checksum = new CRC32();
+		checksum.update(checkedBytes);
+		if (checksum.getValue() != buffer.getLong(buffer.limit() - 8))
+		{
+			throw new IOException("Corrupt binary model file, checksum mismatch: " + modelPath);
+		}
+	}
+
+	private static ModelSnapshot decode(MappedByteBuffer buffer, String modelPath) throws IOException
+	{
+		try
+		{
+			int version = buffer.getInt(4);
+			buffer.position(8);
+			double hamProbability  = buffer.getDouble();
+			double spamProbability = buffer.getDouble();
+			int hamWordCount       = buffer.getInt();
+			int spamWordCount      = buffer.getInt();
+			int vocabularySize     = buffer.getInt();
+			int hashBuckets        = (version >= 2) ? buffer.getInt() : 0;
+			String hamDatasetPath  = readString(buffer);
+			String spamDatasetPath = readString(buffer);
+			if (version < 3)
+			{
+				return new ModelSnapshot(hamDatasetPath, spamDatasetPath, hamProbability, spamProbability, hamWordCount,
+											spamWordCount, decodeWords(buffer, vocabularySize, hashBuckets));
+			}
+			TermIndex words = (hashBuckets == 0) ? readTermDictionary(buffer, vocabularySize, modelPath)
+													: readHashedTermIndex(buffer, vocabularySize, hashBuckets);
+			int[][] frequencies                 = new int[2][];
+			double[][] conditionalProbabilities = new double[2][];
+			double[][] logProbabilities         = new double[2][];
+			for (int classIndex = Vocabulary.HAM_CLASS; classIndex <= Vocabulary.SPAM_CLASS; ++classIndex)
+			{
+				frequencies[classIndex] = readInts(buffer, vocabularySize);
+			}
+			for (int classIndex = Vocabulary.HAM_CLASS; classIndex <= Vocabulary.SPAM_CLASS; ++classIndex)
+			{
+				conditionalProbabilities[classIndex] = readDoubles(buffer, vocabularySize);
+			}
+			for (int classIndex = Vocabulary.HAM_CLASS; classIndex <= Vocabulary.SPAM_CLASS; ++classIndex)
+			{
+				logProbabilities[classIndex] = readDoubles(buffer, vocabularySize);
+			}
+			return new ModelSnapshot(hamDatasetPath, spamDatasetPath, hamProbability, spamProbability, hamWordCount,
+										spamWordCount, new Vocabulary(words, frequencies, conditionalProbabilities,
+																		logProbabilities));
+		}
+		catch (RuntimeException e)
+		{
+			throw new IOException("Malformed binary model file: " + modelPath, e);
+		}
+	}
+
+	// reads the tables of a TermDictionary written by writeTermIndex. the slots are checked to only hold ids of
+	// the dictionary, so that a malformed table cannot send a lookup out of bounds
+	private static TermDictionary readTermDictionary(ByteBuffer buffer, int size, String modelPath) throws IOException
+	{
+		int slotCount = buffer.getInt();
+		if (slotCount < 2 || Integer.bitCount(slotCount) != 1 || slotCount < size * 2)
+		{
+			throw new IOException("Malformed binary model file, bad slot count " + slotCount + ": " + modelPath);
+		}
+		int[] slots = readInts(buffer, slotCount);
+		for (int slot : slots)
+		{
+			if (slot < 0 || slot > size)
+			{
+				throw new IOException("Malformed binary model file, bad slot " + slot + ": " + modelPath);
+			}
+		}
+		// the term arrays are given room for one more term in case the dictionary is ever added to
+		int[] termHashes  = Arrays.copyOf(readInts(buffer, size), size + 1);
+		int[] termOffsets = Arrays.copyOf(readInts(buffer, size + 1), size + 2);
+		for (int id = 0; id < size; ++id)
+		{
+			if (termOffsets[id] < 0 || termOffsets[id] > termOffsets[id + 1])
+			{
+				throw new IOException("Malformed binary model file, bad term offset " + termOffsets[id] + ": "
+										+ modelPath);
+			}
+		}
+		char[] termCharacters = new char[Math.max(1, termOffsets[size])];
+		buffer.asCharBuffer().get(termCharacters, 0, termOffsets[size]);
+		buffer.position(buffer.position() + termOffsets[size] * 2);
+		return new TermDictionary(slots, termHashes, termOffsets, termCharacters, size);
+	}
+
+	// reads the buckets of a HashedTermIndex written by writeTermIndex
+	private static HashedTermIndex readHashedTermIndex(ByteBuffer buffer, int size, int hashBuckets)
+	{
+		// the buckets are given room for at least one, which the index needs to grow if it is ever added to
+		return new HashedTermIndex(hashBuckets, Arrays.copyOf(readInts(buffer, size), Math.max(1, size)), size);
+	}
+
+	// reads the terms of a version 1 or 2 file and adds them to a new vocabulary along with their columns
+	private static Vocabulary decodeWords(ByteBuffer buffer, int vocabularySize, int hashBuckets)
+	{
+		byte[] termBlock  = new byte[buffer.getInt()];
+		int[] termOffsets = readInts(buffer, vocabularySize + 1);
+		buffer.get(termBlock);
+		int[] hamFrequencies                  = readInts(buffer, vocabularySize);
+		int[] spamFrequencies                 = readInts(buffer, vocabularySize);
+		double[] hamConditionalProbabilities  = readDoubles(buffer, vocabularySize);
+		double[] spamConditionalProbabilities = readDoubles(buffer, vocabularySize);
+		Vocabulary vocabulary = (hashBuckets == 0) ? new Vocabulary(vocabularySize)
+									: new Vocabulary(new HashedTermIndex(hashBuckets, vocabularySize), vocabularySize);
+		for (int i = 0; i < vocabularySize; ++i)
+		{
+			int id = vocabulary.add(new String(termBlock, termOffsets[i], termOffsets[i + 1] - termOffsets[i],
+												StandardCharsets.UTF_8));
+			vocabulary.addFrequencies(id, hamFrequencies[i], spamFrequencies[i]);
+			vocabulary.setConditionalProbabilities(id, hamConditionalProbabilities[i], spamConditionalProbabilities[i]);
+		}
+		return vocabulary;
+	}
+
+	private static int[] readInts(ByteBuffer buffer, int count)
+	{
+		int[] returnArray = new int[count];
+		buffer.asIntBuffer().get(returnArray);
+		buffer.position(buffer.position() + count * 4);
+		return returnArray;
+	}
+
+	private static double[] readDoubles(ByteBuffer buffer, int count)
+	{
+		double[] returnArray = new double[count];
+		buffer.asDoubleBuffer().get(returnArray);
+		buffer.position(buffer.position() + count * 8);
+		return returnArray;
+	}
+
+	// reads a string written by writeString, null for a length of -1
+	private static String readString(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if (length == -1)
+		{
+			return null;
+		}
+		byte[] encodedString = new byte[length];
+		buffer.get(encodedString);
+		return new String(encodedString, StandardCharsets.UTF_8);
+	}
+}
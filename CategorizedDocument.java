@@ -0,0 +1,85 @@
+package spamfilter;
+
+// the scores of a document against every category of a CategoryClassifier
+public class CategorizedDocument
+{
+	private String documentName;
+	private String[] categories;
+	private double[] scores;				// log10 of the probability of every category up to a common factor
+	private int tokenCount;
+	private int vocabularyHitCount;
+
+	public CategorizedDocument(String documentName, String[] categories, CategoryScorer scorer)
+	{
+		this.documentName       = documentName;
+		this.categories         = categories;
+		this.scores             = scorer.getScores();
+		this.tokenCount         = scorer.getTokenCount();
+		this.vocabularyHitCount = scorer.getVocabularyHitCount();
+	}
+
+	public String getDocumentName()
+	{
+		return documentName;
+	}
+
+	public int getCategoryCount()
+	{
+		return categories.length;
+	}
+
+	public String getCategory(int categoryIndex)
+	{
+		return categories[categoryIndex];
+	}
+
+	// the log10 of the probability that the document belongs to the specified category up to a factor common to
+	// every category, like ClassifiedDocument.getHamProbability
+	public double getScore(int categoryIndex)
+	{
+		return scores[categoryIndex];
+	}
+
+	// the probability that the document belongs to the specified category, the scores being normalized so that
+	// the probabilities of every category add up to 1
+	public double getProbability(int categoryIndex)
+	{
+		double maxScore = scores[getBestCategoryIndex()];
+		double total    = 0;
+		for (double score : scores)
+		{
+			total += Math.pow(10, score - maxScore);
+		}
+		return Math.pow(10, scores[categoryIndex] - maxScore) / total;
+	}
+
+	// the index of the category with the highest score, the first one on a tie
+	public int getBestCategoryIndex()
+	{
+		int bestIndex = 0;
+		for (int categoryIndex = 1; categoryIndex < scores.length; ++categoryIndex)
+		{
+			if (scores[categoryIndex] > scores[bestIndex])
+			{
+				bestIndex = categoryIndex;
+			}
+		}
+		return bestIndex;
+	}
+
+	public String getBestCategory()
+	{
+		return categories[getBestCategoryIndex()];
+	}
+
+	public int getTokenCount()
+	{
+		return tokenCount;
+	}
+
+	// number of tokens found in the vocabulary
+	public int getVocabularyHitCount()
+	{
+		return vocabularyHitCount;
+	}
+}
@@ -0,0 +1,189 @@
+package spamfilter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+// naive Bayes classifier sorting documents into any number of categories, such as phishing, newsletter,
+// transactional or malware-carrier mail, trained from a dataset folder, mbox file or Maildir per category (see
+// MailCorpus). words are accepted, left out when rare and smoothed like SpamChecker does with ham and spam, which
+// a CategoryClassifier with a ham and a spam category scores exactly like. the frequencies and probabilities of
+// every category are held by a Vocabulary with a class per category, and a document is scored against every
+// category in one pass over its tokens, see CategoryScorer
+public class CategoryClassifier
+{
+	private final String[] categories;
+	private final String[] datasetPaths;
+	private final int[] wordCounts;					// sum of the frequencies of the vocabulary in every category
+	private final double[] categoryProbabilities;
+	private final Vocabulary vocabulary;
+
+	// the category at every index is trained from the dataset at the same index of datasetPaths
+	public CategoryClassifier(String[] categories, String[] datasetPaths, String stopWordsPath)
+	{
+		if (categories.length < 2 || categories.length != datasetPaths.length)
+		{
+			throw new IllegalArgumentException("Expected a dataset for each of at least 2 categories: "
+												+ categories.length + " categories, " + datasetPaths.length + " datasets");
+		}
+		this.categories   = categories.clone();
+		this.datasetPaths = datasetPaths.clone();
+		WordFilter filter  = new WordFilter(SpamChecker.parseStopWords(stopWordsPath));
+		Vocabulary counts  = new Vocabulary(new TermDictionary(16), categories.length, 16);
+		int[] documents    = new int[categories.length];
+		int totalDocuments = 0;
+		for (int category = 0; category < categories.length; ++category)
+		{
+			MailMessage[] messages = MailCorpus.open(datasetPaths[category]).list();
+			for (MailMessage message : messages)
+			{
+				countDocument(counts, message, category, filter);
+			}
+			documents[category]  = messages.length;
+			totalDocuments      += messages.length;
+		}
+
+		// rare words are left out and the probabilities smoothed over the words kept, as for ham and spam
+		this.vocabulary            = counts.withoutRareWords(SpamChecker.MIN_WORD_FREQUENCY);
+		this.wordCounts            = new int[categories.length];
+		this.categoryProbabilities = new double[categories.length];
+		for (int category = 0; category < categories.length; ++category)
+		{
+			wordCounts[category]            = (int)vocabulary.getTotalFrequency(category);
+			categoryProbabilities[category] = (double)documents[category] / totalDocuments;
+			for (int id = 0; id < vocabulary.size(); ++id)
+			{
+				vocabulary.setConditionalProbability(category, id,
+						SpamChecker.conditionalProbability(vocabulary.getFrequency(category, id), wordCounts[category],
+															vocabulary.size()));
+			}
+		}
+	}
+
+	public int getCategoryCount()
+	{
+		return categories.length;
+	}
+
+	public String getCategory(int categoryIndex)
+	{
+		return categories[categoryIndex];
+	}
+
+	public String getDatasetPath(int categoryIndex)
+	{
+		return datasetPaths[categoryIndex];
+	}
+
+	// the prior probability of the specified category, its share of the training documents
+	public double getCategoryProbability(int categoryIndex)
+	{
+		return categoryProbabilities[categoryIndex];
+	}
+
+	public int getWordCount(int categoryIndex)
+	{
+		return wordCounts[categoryIndex];
+	}
+
+	// the words kept with their frequencies and probabilities, the class of each category being its index
+	public Vocabulary getVocabulary()
+	{
+		return vocabulary;
+	}
+
+	// classifies the document file at the specified path, decoded with the default charset as it is scored. a
+	// file that cannot be read is reported and scored as far as it was read
+	public CategorizedDocument classifyDocument(String documentPath)
+	{
+		CategoryScorer scorer = newScorer();
+		try
+		{
+			InputStream input = new FileInputStream(documentPath);
+			try
+			{
+				new DocumentTokenizer().tokenize(new InputStreamReader(input, Charset.defaultCharset()), scorer);
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return new CategorizedDocument(documentPath, categories, scorer);
+	}
+
+	// classifies a document already in memory. the name is only used to identify the result
+	public CategorizedDocument classifyDocument(String documentName, CharSequence documentContents)
+	{
+		CategoryScorer scorer = newScorer();
+		new DocumentTokenizer().tokenize(documentContents, scorer);
+		return new CategorizedDocument(documentName, categories, scorer);
+	}
+
+	// classifies the specified corpus message, reading it from its file if it has one or decoding its bytes with
+	// the default charset otherwise
+	public CategorizedDocument classifyDocument(MailMessage message) throws IOException
+	{
+		if (message.getPath() != null)
+		{
+			return classifyDocument(message.getPath().toString());
+		}
+		return classifyDocument(message.getName(), Charset.defaultCharset().decode(message.getContents()));
+	}
+
+	private CategoryScorer newScorer()
+	{
+		return new CategoryScorer(vocabulary, categoryProbabilities);
+	}
+
+	// counts every word of the specified message the filter accepts towards the specified category, decoding it
+	// with the default charset like WordCounts does. a message that cannot be read is reported and counts as far as
+	// it was read
+	private static void countDocument(Vocabulary counts, MailMessage message, int category, WordFilter filter)
+	{
+		TokenSink sink = newCountingSink(counts, category, filter);
+		try
+		{
+			if (message.getPath() == null)
+			{
+				new DocumentTokenizer().tokenize(Charset.defaultCharset().decode(message.getContents()), sink);
+				return;
+			}
+			InputStream input = new FileInputStream(message.getPath().toFile());
+			try
+			{
+				new DocumentTokenizer().tokenize(new InputStreamReader(input, Charset.defaultCharset()), sink);
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// a sink counting every token it is handed that the specified filter accepts towards the specified category
+	private static TokenSink newCountingSink(final Vocabulary counts, final int category, final WordFilter filter)
+	{
+		return new TokenSink()
+		{
+			@Override
+			public void acceptToken(char[] characters, int offset, int length)
+			{
+				if (filter.accept(characters, offset, length))
+				{
+					counts.addFrequency(category, counts.add(filter.getWord(), 0, length, filter.getHash()), 1);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,68 @@
+package spamfilter;
+
+// TokenSink that accumulates the log probabilities of a document belonging to every class of a vocabulary from
+// the words it receives. a token is looked up once and its log probabilities in every class, read from the
+// per-class arrays at its id, are added to the scores of all the classes, so every class more only costs an
+// addition per token found in the vocabulary
+public class CategoryScorer implements TokenSink
+{
+	private Vocabulary vocabulary;
+	private double[][] logProbabilities;		// [class][id]
+	private double[] scores;
+	private int tokenCount;
+	private int vocabularyHitCount;
+
+	// the vocabulary must be done changing, and classProbabilities holds the prior probability of every class
+	public CategoryScorer(Vocabulary vocabulary, double[] classProbabilities)
+	{
+		if (classProbabilities.length != vocabulary.getClassCount())
+		{
+			throw new IllegalArgumentException("Expected the probabilities of " + vocabulary.getClassCount()
+												+ " classes: " + classProbabilities.length);
+		}
+		this.vocabulary       = vocabulary;
+		this.logProbabilities = vocabulary.getLogProbabilities();
+		this.scores           = new double[classProbabilities.length];
+		for (int classIndex = 0; classIndex < scores.length; ++classIndex)
+		{
+			scores[classIndex] = Math.log10(classProbabilities[classIndex]);
+		}
+	}
+
+	// the log10 of the probability of the document belonging to every class up to a common factor
+	public double[] getScores()
+	{
+		return scores.clone();
+	}
+
+	public double getScore(int classIndex)
+	{
+		return scores[classIndex];
+	}
+
+	public int getTokenCount()
+	{
+		return tokenCount;
+	}
+
+	// number of tokens found in the vocabulary
+	public int getVocabularyHitCount()
+	{
+		return vocabularyHitCount;
+	}
+
+	@Override
+	public void acceptToken(char[] characters, int offset, int length)
+	{
+		++tokenCount;
+		int id = vocabulary.find(characters, offset, length);
+		if (id != -1)
+		{
+			++vocabularyHitCount;
+			for (int classIndex = 0; classIndex < scores.length; ++classIndex)
+			{
+				scores[classIndex] += logProbabilities[classIndex][id];
+			}
+		}
+	}
+}
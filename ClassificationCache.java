@@ -0,0 +1,248 @@
+package spamfilter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// bounded cache of classifications keyed by a hash of the normalized document contents, for traffic where the
+// same body arrives many times. contents are normalized by collapsing every run of whitespace into a single space,
+// which the tokenizer treats alike, so a copy that only differs that way gets the same scores without being
+// tokenized or scored again. case is kept, since words are looked up in the vocabulary as they appear. a hit must
+// also match the normalized length and a second, independent hash of the contents, so that a crafted collision
+// of the key cannot replay the scores of another document. the least recently used entry is evicted beyond
+// maxEntries, an entry older than maxAge is dropped when it is next looked up, and every entry is dropped once a
+// document is classified against a different model than the entries were
+public class ClassificationCache
+{
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final long CHECK_MULTIPLIER = 0x9E3779B97F4A7C15L;
+	private final int maxEntries;
+	private final long maxAgeNanos;								// 0 for no limit
+	private final LinkedHashMap<Long, Entry> entries;			// in access order, guarded by this object
+	private ModelSnapshot model;								// the model of every entry
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long expirations;
+	private long invalidations;
+
+	// a maxAge of 0 keeps entries until they are evicted or invalidated
+	public ClassificationCache(int maxEntries, long maxAge, TimeUnit timeUnit)
+	{
+		if (maxEntries < 1 || maxAge < 0)
+		{
+			throw new IllegalArgumentException("Invalid cache limits: " + maxEntries + " entries, " + maxAge + " "
+												+ timeUnit);
+		}
+		this.maxEntries  = maxEntries;
+		this.maxAgeNanos = timeUnit.toNanos(maxAge);
+		this.entries     = new LinkedHashMap<Long, Entry>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest)
+			{
+				if (size() > maxEntries)
+				{
+					++evictions;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	// returns the classification of the specified contents against the specified model, from the cache if an
+	// equal document was classified against it, otherwise scoring the contents and caching the result. the
+	// documentPath, which may be null, and documentName only identify the result
+	public ClassifiedDocument classify(String documentPath, String documentName, CharSequence documentContents,
+			ModelSnapshot model)
+	{
+		ContentHash contentHash = hash(documentContents);
+		Long key                = Long.valueOf(contentHash.key);
+		long now                = System.nanoTime();
+		Entry entry;
+		synchronized (this)
+		{
+			if (model != this.model)
+			{
+				invalidate(model);
+			}
+			entry = entries.get(key);
+			if (entry != null && (entry.length != contentHash.length || entry.check != contentHash.check))
+			{
+				// a collision of the key, counted as a miss and left for the document scored below to replace
+				entry = null;
+			}
+			else if (entry != null && maxAgeNanos != 0 && now - entry.creationTime > maxAgeNanos)
+			{
+				entries.remove(key);
+				++expirations;
+				entry = null;
+			}
+			if (entry != null)
+			{
+				++hits;
+			}
+			else
+			{
+				++misses;
+			}
+		}
+		if (entry != null)
+		{
+			return new ClassifiedDocument(documentPath, documentName, documentContents, entry.hamProbability,
+											entry.spamProbability);
+		}
+		ClassifiedDocument result = new ClassifiedDocument(documentPath, documentName, documentContents, model);
+		synchronized (this)
+		{
+			// the model may have changed while the document was scored
+			if (model == this.model)
+			{
+				entries.put(key, new Entry(now, contentHash, result.getHamProbability(), result.getSpamProbability()));
+			}
+		}
+		return result;
+	}
+
+	// drops every entry
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	// entries dropped to stay within maxEntries
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	// entries dropped for being older than maxAge
+	public synchronized long getExpirations()
+	{
+		return expirations;
+	}
+
+	// number of times every entry was dropped because the model changed
+	public synchronized long getInvalidations()
+	{
+		return invalidations;
+	}
+
+	public synchronized double getHitRate()
+	{
+		return (hits + misses == 0) ? 0 : (double)hits / (hits + misses);
+	}
+
+	public synchronized String toString()
+	{
+		return String.format("entries=%d/%d hits=%d misses=%d hitRate=%.2f%% evictions=%d expirations=%d invalidations=%d",
+								entries.size(), maxEntries, hits, misses, 100 * getHitRate(), evictions, expirations,
+								invalidations);
+	}
+
+	// hashes of the normalized contents: the key is a 64 bit FNV-1a finished with the MurmurHash3 mixer so every
+	// bit depends on every character, and the check a multiplicative hash computed in the same pass
+	static ContentHash hash(CharSequence contents)
+	{
+		long hash          = FNV_OFFSET_BASIS;
+		long check         = 0;
+		int normalized     = 0;
+		boolean whitespace = false;
+		int length         = contents.length();
+		for (int i = 0; i < length; ++i)
+		{
+			char character = contents.charAt(i);
+			if (DocumentTokenizer.isWhitespace(character))
+			{
+				if (whitespace)
+				{
+					continue;
+				}
+				whitespace = true;
+				character  = ' ';
+			}
+			else
+			{
+				whitespace = false;
+			}
+			hash  = (hash ^ character) * FNV_PRIME;
+			check = (check + character + 1) * CHECK_MULTIPLIER;
+			++normalized;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		check ^= check >>> 29;
+		return new ContentHash(hash, check, normalized);
+	}
+
+	// must hold the lock of this object
+	private void invalidate(ModelSnapshot model)
+	{
+		if (this.model != null && !entries.isEmpty())
+		{
+			++invalidations;
+		}
+		entries.clear();
+		this.model = model;
+	}
+
+	static class ContentHash
+	{
+		private final long key;
+		private final long check;
+		private final int length;					// of the normalized contents
+
+		public ContentHash(long key, long check, int length)
+		{
+			this.key    = key;
+			this.check  = check;
+			this.length = length;
+		}
+	}
+
+	// only the scores and the checks of the contents are kept, not the document they were computed for
+	private static class Entry
+	{
+		private final long creationTime;
+		private final long check;
+		private final int length;
+		private final double hamProbability;
+		private final double spamProbability;
+
+		public Entry(long creationTime, ContentHash contentHash, double hamProbability, double spamProbability)
+		{
+			this.creationTime    = creationTime;
+			this.check           = contentHash.check;
+			this.length          = contentHash.length;
+			this.hamProbability  = hamProbability;
+			this.spamProbability = spamProbability;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package spamfilter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JDK Flight Recorder event covering the classification of one document, which reads, tokenizes and scores it in
+// a single pass
+@Name("spamfilter.Classification")
+@Label("Document Classification")
+@Category("Spam Filter")
+@Description("Reading, tokenizing and scoring a document being classified")
+public class ClassificationEvent extends Event
+{
+	@Label("Document")
+	@Description("Path of the document file, or the name of a document classified from memory or a stream")
+	String document;
+
+	@Label("Tokens")
+	int tokens;
+
+	@Label("Vocabulary Hits")
+	@Description("Tokens found in the vocabulary of the model")
+	int vocabularyHits;
+
+	@Label("Spam")
+	boolean spam;
+
+	@Label("Scoring Outcome")
+	@Description("COMPLETE, or why scoring stopped before the end of the document")
+	String outcome;
+}
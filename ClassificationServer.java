@@ -0,0 +1,463 @@
+package spamfilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// serves classifications against a model file over a line protocol on a local port. every request is a header
+// line followed by the document bytes:
+//
+//     CLASSIFY <name> <length> [charset]\n<length bytes of document, UTF-8 unless a charset is given>
+//     STATS\n
+//     QUIT\n
+//
+// and every response is a single line, in request order:
+//
+//     OK <name> SPAM|HAM <ham score> <spam score>
+//     STATS count=... mean=...us p50=...us p99=...us max=...us
+//     ERROR <message>
+//
+// clients may pipeline requests without waiting for responses. each connection is read on its own thread and
+// each classification runs on its own thread, virtual threads where the runtime has them. at most
+// maxConcurrency classifications are running or waiting to be written across all connections, further requests
+// are not read until one completes. a connection that sends nothing for READ_TIMEOUT_MILLIS stops being read and
+// is closed once the responses to its requests are written
+public class ClassificationServer
+{
+	private static final int DEFAULT_PORT = 7331;
+	private static final int DEFAULT_MAX_CONCURRENCY = 1024;
+	private static final int MAX_HEADER_LENGTH = 1024;
+	private static final int MAX_DOCUMENT_LENGTH = 16 * 1024 * 1024;
+	private static final int CACHE_MAX_AGE_MINUTES = 10;
+	private static final int READ_TIMEOUT_MILLIS = 60 * 1000;
+	private static final byte[] LINE_SEPARATOR = {'\n'};
+	private static final Method VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+	private final SpamChecker checker;
+	private final ServerSocket serverSocket;
+	private final ExecutorService executor;
+	private final Semaphore concurrencyLimit;
+	private final LatencyHistogram latencies;			// from a request being read to its response being written
+	private volatile boolean running;
+
+	// listens on the specified port of the loopback address, 0 picking any free port
+	public ClassificationServer(SpamChecker checker, int port, int maxConcurrency) throws IOException
+	{
+		if (maxConcurrency < 1)
+		{
+			throw new IllegalArgumentException("maxConcurrency must be at least 1: " + maxConcurrency);
+		}
+		this.checker          = checker;
+		this.serverSocket     = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+		this.executor         = newThreadPerTaskExecutor();
+		this.concurrencyLimit = new Semaphore(maxConcurrency);
+		this.latencies        = new LatencyHistogram();
+		this.running          = true;
+	}
+
+	// arguments: model file path, then optionally the port, the concurrency limit and the number of classifications
+	// to cache, 0 for none
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1)
+		{
+			System.out.println("Usage: ClassificationServer <model file> [port] [max concurrency] [cache entries]");
+			return;
+		}
+		int port           = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+		int maxConcurrency = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_MAX_CONCURRENCY;
+		int cacheEntries   = (args.length > 3) ? Integer.parseInt(args[3]) : 0;
+		System.out.print("Loading model from " + args[0] + "...");
+		final SpamChecker checker = new SpamChecker(args[0]);
+		System.out.println(" Done");
+		if (cacheEntries > 0)
+		{
+			checker.setClassificationCache(new ClassificationCache(cacheEntries, CACHE_MAX_AGE_MINUTES, TimeUnit.MINUTES));
+		}
+
+		final ClassificationServer server = new ClassificationServer(checker, port, maxConcurrency);
+		Runtime.getRuntime().addShutdownHook(new Thread()
+		{
+			@Override
+			public void run()
+			{
+				server.close();
+				System.out.println("Classifications: " + server.getStatistics());
+				if (checker.getClassificationCache() != null)
+				{
+					System.out.println("Cache: " + checker.getClassificationCache());
+				}
+			}
+		});
+		System.out.println("Serving classifications on port " + server.getPort() + " with at most " + maxConcurrency
+							+ " in flight on " + (VIRTUAL_THREAD_EXECUTOR_FACTORY != null ? "virtual" : "platform")
+							+ " threads");
+		server.serve();
+	}
+
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	// latency of the classifications served so far
+	public StageStatistics getStatistics()
+	{
+		return StageStatistics.of(latencies);
+	}
+
+	// accepts connections until close is called
+	public void serve()
+	{
+		while (running)
+		{
+			try
+			{
+				final Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+				try
+				{
+					executor.execute(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							handleConnection(socket);
+						}
+					});
+				}
+				catch (RejectedExecutionException e)
+				{
+					// closed since the connection was accepted
+					closeQuietly(socket);
+				}
+			}
+			catch (IOException e)
+			{
+				if (running)
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	// stops accepting connections. requests already read are still answered
+	public void close()
+	{
+		running = false;
+		try
+		{
+			serverSocket.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		executor.shutdown();
+	}
+
+	// reads the requests of a connection, starting a classification for each, while the responses are written in
+	// order by a separate thread, which closes the connection once they are all written
+	private void handleConnection(Socket socket)
+	{
+		final LinkedBlockingQueue<PendingResponse> responses = new LinkedBlockingQueue<PendingResponse>();
+		try
+		{
+			final OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					writeResponses(responses, output);
+				}
+			});
+			InputStream input = new BufferedInputStream(socket.getInputStream());
+			try
+			{
+				readRequests(input, responses);
+			}
+			catch (SocketTimeoutException e)
+			{
+				// idle for too long, the responses already due are still written
+			}
+			finally
+			{
+				responses.add(new PendingResponse(SpamFilterMetrics.NOT_TIMED, null));
+			}
+		}
+		catch (IOException e)
+		{
+			closeQuietly(socket);
+		}
+		catch (RejectedExecutionException e)
+		{
+			// closed before the responses of the connection could be written
+			closeQuietly(socket);
+		}
+		catch (InterruptedException e)
+		{
+			closeQuietly(socket);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void readRequests(InputStream input, LinkedBlockingQueue<PendingResponse> responses)
+			throws IOException, InterruptedException
+	{
+		String header;
+		while ((header = readHeader(input)) != null)
+		{
+			String[] fields = header.trim().split(" +");
+			if (fields[0].equals("CLASSIFY") && (fields.length == 3 || fields.length == 4))
+			{
+				final long startTime   = System.nanoTime();
+				final String name      = fields[1];
+				final Charset charset;
+				final byte[] document;
+				try
+				{
+					int length = Integer.parseInt(fields[2]);
+					if (length < 0 || length > MAX_DOCUMENT_LENGTH)
+					{
+						responses.add(PendingResponse.completed("ERROR document length out of range: " + length));
+						return;
+					}
+					charset  = (fields.length == 4) ? Charset.forName(fields[3]) : StandardCharsets.UTF_8;
+					document = input.readNBytes(length);
+					if (document.length < length)
+					{
+						return;
+					}
+				}
+				catch (IllegalArgumentException e)
+				{
+					// the document cannot be told apart from the next request, so the connection ends here
+					responses.add(PendingResponse.completed("ERROR " + e.getMessage()));
+					return;
+				}
+				concurrencyLimit.acquire();
+				Future<String> line;
+				try
+				{
+					line = executor.submit(new Callable<String>()
+					{
+						@Override
+						public String call()
+						{
+							ClassifiedDocument result = checker.classifyDocument(name, ByteBuffer.wrap(document),
+																					charset);
+							return "OK " + name + (result.isSpam() ? " SPAM " : " HAM ") + result.getHamProbability()
+									+ " " + result.getSpamProbability();
+						}
+					});
+				}
+				catch (RejectedExecutionException e)
+				{
+					// the server was closed, so no further request of the connection is read
+					concurrencyLimit.release();
+					responses.add(PendingResponse.completed("ERROR server is closing"));
+					return;
+				}
+				responses.add(new PendingResponse(startTime, line));
+			}
+			else if (fields[0].equals("STATS"))
+			{
+				responses.add(PendingResponse.completed("STATS " + getStatistics()));
+			}
+			else if (fields[0].equals("QUIT"))
+			{
+				return;
+			}
+			else
+			{
+				responses.add(PendingResponse.completed("ERROR unknown request: " + header));
+			}
+		}
+	}
+
+	// writes every response in the order the requests were read, flushing whenever no further response is ready
+	// yet so that pipelined responses share writes. the permit of a classification is released once its response
+	// is written, or discarded if the connection fails
+	private void writeResponses(LinkedBlockingQueue<PendingResponse> responses, OutputStream output)
+	{
+		boolean failed = false;
+		try
+		{
+			while (true)
+			{
+				PendingResponse response = responses.poll();
+				if (response == null)
+				{
+					if (!failed)
+					{
+						try
+						{
+							output.flush();
+						}
+						catch (IOException e)
+						{
+							failed = true;
+						}
+					}
+					response = responses.take();
+				}
+				if (response.line == null)
+				{
+					break;
+				}
+				String line = responseLine(response.line);
+				if (!failed)
+				{
+					try
+					{
+						output.write(line.getBytes(StandardCharsets.UTF_8));
+						output.write(LINE_SEPARATOR);
+					}
+					catch (IOException e)
+					{
+						failed = true;
+					}
+				}
+				if (response.startTime != SpamFilterMetrics.NOT_TIMED)
+				{
+					latencies.record(System.nanoTime() - response.startTime);
+					concurrencyLimit.release();
+				}
+			}
+			if (!failed)
+			{
+				output.flush();
+			}
+		}
+		catch (IOException e)
+		{
+			// the client went away, nothing left to tell it
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			closeQuietly(output);
+		}
+	}
+
+	// waits for the specified response line
+	private static String responseLine(Future<String> response) throws InterruptedException
+	{
+		try
+		{
+			return response.get();
+		}
+		catch (ExecutionException e)
+		{
+			return "ERROR " + e.getCause();
+		}
+	}
+
+	// reads a header line as ASCII, returning null at the end of the stream
+	private static String readHeader(InputStream input) throws IOException
+	{
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		int read;
+		while ((read = input.read()) != '\n')
+		{
+			if (read == -1)
+			{
+				return (header.size() == 0) ? null : header.toString(StandardCharsets.US_ASCII);
+			}
+			if (header.size() == MAX_HEADER_LENGTH)
+			{
+				throw new IOException("Request header longer than " + MAX_HEADER_LENGTH + " bytes");
+			}
+			header.write(read);
+		}
+		return header.toString(StandardCharsets.US_ASCII);
+	}
+
+	private static void closeQuietly(Closeable closeable)
+	{
+		try
+		{
+			closeable.close();
+		}
+		catch (IOException e)
+		{
+			// already closed or broken, nothing else to release
+		}
+	}
+
+	// virtual threads only exist from Java 21, so they are looked up reflectively to keep running on earlier
+	// versions, where threads are created as needed and reused instead
+	private static ExecutorService newThreadPerTaskExecutor()
+	{
+		if (VIRTUAL_THREAD_EXECUTOR_FACTORY != null)
+		{
+			try
+			{
+				return (ExecutorService)VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+			}
+			catch (ReflectiveOperationException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return Executors.newCachedThreadPool();
+	}
+
+	private static Method findVirtualThreadExecutorFactory()
+	{
+		try
+		{
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+
+	// a response in the order its request was read. startTime is NOT_TIMED for a response that holds no
+	// classification permit, and a null line marks the end of the requests
+	private static class PendingResponse
+	{
+		private final long startTime;
+		private final Future<String> line;
+
+		public PendingResponse(long startTime, Future<String> line)
+		{
+			this.startTime = startTime;
+			this.line      = line;
+		}
+
+		public static PendingResponse completed(String line)
+		{
+			return new PendingResponse(SpamFilterMetrics.NOT_TIMED, CompletableFuture.completedFuture(line));
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package spamfilter;
+
+// receives the documents classified by a BatchClassifier
+public interface ClassificationSink
+{
+	// called once for every classified document, never by two threads at the same time. index is the position of
+	// the document among the classified paths or messages
+	void accept(int index, ClassifiedDocument document);
+}
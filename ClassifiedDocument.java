@@ -1,28 +1,132 @@
 package spamfilter;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 
 public class ClassifiedDocument
 {
+	// how far scoring went through the document
+	public enum ScoringOutcome
+	{
+		COMPLETE, DECIDED, TOKEN_BUDGET, TIME_BUDGET
+	}
+
+	private String documentPath;				// null for a document classified from memory or a stream
+	private CharSequence documentContents;		// only kept for a document classified from memory
 	private FilteredDocument document;
 	private String documentName;
-	private Double hamProbability;
-	private Double spamProbability;
+	private double hamProbability;
+	private double spamProbability;
+	private ScoringOutcome scoringOutcome;
 
-	public ClassifiedDocument(String documentPath, HashMap<String, QuantifiedWord> vocabularyFilePath, Double hamProbability, Double spamProbability)
+	// the document is tokenized straight from its file, decoded with the default charset, while it is scored. its
+	// FilteredDocument is only created if getDocument is called
+	public ClassifiedDocument(String documentPath, Vocabulary vocabulary, Double hamProbability, Double spamProbability)
 	{
-		this.document                     = new FilteredDocument(documentPath);
-		this.documentName                 = (new File(documentPath)).getName();
-		List<Double> hamSpamProbabilities = computeHamSpamProbabilities(vocabularyFilePath, hamProbability, spamProbability);
-		this.hamProbability               = hamSpamProbabilities.get(0);
-		this.spamProbability              = hamSpamProbabilities.get(1);
+		this.documentPath = documentPath;
+		this.documentName = (new File(documentPath)).getName();
+		DocumentTokenizer tokenizer = new DocumentTokenizer();
+		scoreFile(tokenizer, new DocumentScorer(vocabulary, hamProbability, spamProbability));
 	}
-	
+
+	// same as the constructor above but scored against the specified model under the specified limits. the file
+	// size bounds the rest of the document, assuming the default charset takes at least a byte per character
+	public ClassifiedDocument(String documentPath, ModelSnapshot model, ScoringLimits limits)
+	{
+		this.documentPath = documentPath;
+		this.documentName = (new File(documentPath)).getName();
+		DocumentTokenizer tokenizer = new DocumentTokenizer();
+		long documentLength = limits.isUnlimited() ? -1 : (new File(documentPath)).length();
+		scoreFile(tokenizer, createScorer(model, limits, tokenizer, documentLength));
+	}
+
+	// classifies a document already in memory under the specified name. the contents are kept, not copied, for
+	// getDocument, so they must not change afterwards
+	public ClassifiedDocument(String documentName, CharSequence documentContents, Vocabulary vocabulary,
+			double hamProbability, double spamProbability)
+	{
+		this.documentName     = documentName;
+		this.documentContents = documentContents;
+		DocumentTokenizer tokenizer = new DocumentTokenizer();
+		scoreContents(tokenizer, new DocumentScorer(vocabulary, hamProbability, spamProbability), documentContents);
+	}
+
+	// same as the constructor above but scored against the specified model under the specified limits
+	public ClassifiedDocument(String documentName, CharSequence documentContents, ModelSnapshot model,
+			ScoringLimits limits)
+	{
+		this.documentName     = documentName;
+		this.documentContents = documentContents;
+		DocumentTokenizer tokenizer = new DocumentTokenizer();
+		scoreContents(tokenizer, createScorer(model, limits, tokenizer, documentContents.length()), documentContents);
+	}
+
+	// classifies the document read from the specified stream, decoded with the specified charset, under the
+	// specified name. the stream is read to its end but not closed, and its contents are not kept, so getDocument
+	// returns null
+	public ClassifiedDocument(String documentName, InputStream input, Charset charset, Vocabulary vocabulary,
+			double hamProbability, double spamProbability) throws IOException
+	{
+		this.documentName = documentName;
+		DocumentTokenizer tokenizer = new DocumentTokenizer();
+		scoreStream(tokenizer, new DocumentScorer(vocabulary, hamProbability, spamProbability),
+					new InputStreamReader(input, charset));
+	}
+
+	// same as the constructor above but scored against the specified model under the specified limits. the length
+	// of a stream is unknown, so only the budgets of the limits apply and the stream is only read as far as
+	// scoring goes
+	public ClassifiedDocument(String documentName, InputStream input, Charset charset, ModelSnapshot model,
+			ScoringLimits limits) throws IOException
+	{
+		this.documentName = documentName;
+		DocumentTokenizer tokenizer = new DocumentTokenizer();
+		scoreStream(tokenizer, createScorer(model, limits, tokenizer, -1), new InputStreamReader(input, charset));
+	}
+
+	// classifies a document already in memory that was read from the specified path, or null if it was not, for
+	// a ClassificationCache. the contents are kept for getDocument when there is no path
+	ClassifiedDocument(String documentPath, String documentName, CharSequence documentContents, ModelSnapshot model)
+	{
+		this.documentPath     = documentPath;
+		this.documentName     = documentName;
+		this.documentContents = (documentPath == null) ? documentContents : null;
+		DocumentTokenizer tokenizer = new DocumentTokenizer();
+		scoreContents(tokenizer, createScorer(model, ScoringLimits.NONE, tokenizer, documentContents.length()),
+						documentContents);
+	}
+
+	// same as the constructor above but taking the scores a ClassificationCache kept for the same contents
+	ClassifiedDocument(String documentPath, String documentName, CharSequence documentContents, double hamProbability,
+			double spamProbability)
+	{
+		this.documentPath     = documentPath;
+		this.documentName     = documentName;
+		this.documentContents = (documentPath == null) ? documentContents : null;
+		this.hamProbability   = hamProbability;
+		this.spamProbability  = spamProbability;
+		this.scoringOutcome   = ScoringOutcome.COMPLETE;
+	}
+
+	// returns the filtered document, or null if the document was classified from a stream
 	public FilteredDocument getDocument()
 	{
+		if (document == null)
+		{
+			if (documentPath != null)
+			{
+				document = new FilteredDocument(documentPath, true);
+			}
+			else if (documentContents != null)
+			{
+				document = new FilteredDocument(documentName, documentContents, true);
+			}
+		}
 		return document;
 	}
 
@@ -46,24 +150,96 @@ public class ClassifiedDocument
 		return this.spamProbability > this.hamProbability;
 	}
 
-	// the returned list has two elements. the first element is the probability that the document of this
-	// object is ham and the second is the probability that it is spam
-	private List<Double> computeHamSpamProbabilities(HashMap<String, QuantifiedWord> vocabulary, Double hamProbability, Double spamProbability)
+	public ScoringOutcome getScoringOutcome()
 	{
-		List<Double> returnList        = new ArrayList<Double>();
-		Double documentHamProbability  = Math.log10(hamProbability);
-		Double documentSpamProbability = Math.log10(spamProbability);
-		for (String currentWord : this.document.getFilteredWords())
+		return scoringOutcome;
+	}
+
+	// whether scoring stopped before the end of the document, in which case the probabilities only cover the
+	// tokens scored until then
+	public boolean isStoppedEarly()
+	{
+		return scoringOutcome != ScoringOutcome.COMPLETE;
+	}
+
+	private static DocumentScorer createScorer(ModelSnapshot model, ScoringLimits limits, DocumentTokenizer tokenizer,
+			long documentLength)
+	{
+		if (limits.isUnlimited())
+		{
+			return new DocumentScorer(model);
+		}
+		return new LimitedDocumentScorer(model, limits, tokenizer, documentLength);
+	}
+
+	private void scoreFile(DocumentTokenizer tokenizer, DocumentScorer scorer)
+	{
+		try
 		{
-			if (vocabulary.containsKey(currentWord))
+			InputStream input = new FileInputStream(documentPath);
+			try
+			{
+				computeHamSpamProbabilities(tokenizer, scorer, new InputStreamReader(input, Charset.defaultCharset()));
+			}
+			finally
 			{
-				QuantifiedWord currentQuantifiedWord = vocabulary.get(currentWord);
-				documentHamProbability  += Math.log10(currentQuantifiedWord.getHamConditionalProbability());
-				documentSpamProbability += Math.log10(currentQuantifiedWord.getSpamConditionalProbability());
+				input.close();
 			}
 		}
-		returnList.add(documentHamProbability);
-		returnList.add(documentSpamProbability);
-		return returnList;
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		setScores(scorer);
+	}
+
+	private void scoreStream(DocumentTokenizer tokenizer, DocumentScorer scorer, Reader reader) throws IOException
+	{
+		computeHamSpamProbabilities(tokenizer, scorer, reader);
+		setScores(scorer);
+	}
+
+	private void scoreContents(DocumentTokenizer tokenizer, DocumentScorer scorer, CharSequence documentContents)
+	{
+		ClassificationEvent event = new ClassificationEvent();
+		event.begin();
+		long startTime = SpamFilterMetrics.startTime();
+		tokenizer.tokenize(documentContents, scorer);
+		recordClassification(event, startTime, scorer);
+		setScores(scorer);
+	}
+
+	// accumulates the probability that the document read from the specified reader is ham and the probability
+	// that it is spam into the specified scorer
+	private void computeHamSpamProbabilities(DocumentTokenizer tokenizer, DocumentScorer scorer, Reader reader)
+			throws IOException
+	{
+		ClassificationEvent event = new ClassificationEvent();
+		event.begin();
+		long startTime = SpamFilterMetrics.startTime();
+		tokenizer.tokenize(reader, scorer);
+		recordClassification(event, startTime, scorer);
+	}
+
+	private void recordClassification(ClassificationEvent event, long startTime, DocumentScorer scorer)
+	{
+		SpamFilterMetrics.recordClassification(startTime, scorer.getTokenCount(), scorer.getVocabularyHitCount());
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.document       = (documentPath != null) ? documentPath : documentName;
+			event.tokens         = scorer.getTokenCount();
+			event.vocabularyHits = scorer.getVocabularyHitCount();
+			event.spam           = scorer.getSpamScore() > scorer.getHamScore();
+			event.outcome        = scorer.getOutcome().toString();
+			event.commit();
+		}
+	}
+
+	private void setScores(DocumentScorer scorer)
+	{
+		this.hamProbability  = scorer.getHamScore();
+		this.spamProbability = scorer.getSpamScore();
+		this.scoringOutcome  = scorer.getOutcome();
 	}
 }
@@ -0,0 +1,93 @@
+package spamfilter;
+
+import java.util.List;
+
+// how the ham and spam documents of an evaluation were classified. spam is the positive class, so precision is
+// the share of documents classified as spam that are spam and recall the share of spam documents classified as
+// spam
+public class ConfusionMatrix
+{
+	private final int hamAsHam;
+	private final int hamAsSpam;
+	private final int spamAsHam;
+	private final int spamAsSpam;
+
+	public ConfusionMatrix(int hamAsHam, int hamAsSpam, int spamAsHam, int spamAsSpam)
+	{
+		this.hamAsHam   = hamAsHam;
+		this.hamAsSpam  = hamAsSpam;
+		this.spamAsHam  = spamAsHam;
+		this.spamAsSpam = spamAsSpam;
+	}
+
+	// the matrix of all the documents of the specified matrices
+	public static ConfusionMatrix sum(List<ConfusionMatrix> matrices)
+	{
+		int hamAsHam   = 0;
+		int hamAsSpam  = 0;
+		int spamAsHam  = 0;
+		int spamAsSpam = 0;
+		for (ConfusionMatrix matrix : matrices)
+		{
+			hamAsHam   += matrix.hamAsHam;
+			hamAsSpam  += matrix.hamAsSpam;
+			spamAsHam  += matrix.spamAsHam;
+			spamAsSpam += matrix.spamAsSpam;
+		}
+		return new ConfusionMatrix(hamAsHam, hamAsSpam, spamAsHam, spamAsSpam);
+	}
+
+	public int getHamAsHam()
+	{
+		return hamAsHam;
+	}
+
+	public int getHamAsSpam()
+	{
+		return hamAsSpam;
+	}
+
+	public int getSpamAsHam()
+	{
+		return spamAsHam;
+	}
+
+	public int getSpamAsSpam()
+	{
+		return spamAsSpam;
+	}
+
+	public int getDocuments()
+	{
+		return hamAsHam + hamAsSpam + spamAsHam + spamAsSpam;
+	}
+
+	public double getAccuracy()
+	{
+		return ratio(hamAsHam + spamAsSpam, getDocuments());
+	}
+
+	public double getPrecision()
+	{
+		return ratio(spamAsSpam, spamAsSpam + hamAsSpam);
+	}
+
+	public double getRecall()
+	{
+		return ratio(spamAsSpam, spamAsSpam + spamAsHam);
+	}
+
+	public String toString()
+	{
+		return String.format("%d documents, accuracy %.2f%%, precision %.2f%%, recall %.2f%%, ham as ham %d, "
+								+ "ham as spam %d, spam as ham %d, spam as spam %d", getDocuments(),
+								100 * getAccuracy(), 100 * getPrecision(), 100 * getRecall(), hamAsHam, hamAsSpam,
+								spamAsHam, spamAsSpam);
+	}
+
+	// 0 when there is nothing to divide
+	private static double ratio(int numerator, int denominator)
+	{
+		return (denominator == 0) ? 0 : (double)numerator / denominator;
+	}
+}
@@ -0,0 +1,132 @@
+package spamfilter;
+
+import java.util.Collections;
+import java.util.List;
+
+// outcome of a CrossValidator run: the confusion matrix of every fold, their sum, and the mean and standard
+// deviation of the per fold accuracy, precision and recall
+public class CrossValidationReport
+{
+	private final List<ConfusionMatrix> folds;
+	private final ConfusionMatrix aggregate;
+
+	public CrossValidationReport(List<ConfusionMatrix> folds)
+	{
+		this.folds     = Collections.unmodifiableList(folds);
+		this.aggregate = ConfusionMatrix.sum(folds);
+	}
+
+	// the matrix of each fold, in fold order
+	public List<ConfusionMatrix> getFolds()
+	{
+		return folds;
+	}
+
+	// the matrix of every document, each of which is held out by exactly one fold
+	public ConfusionMatrix getAggregate()
+	{
+		return aggregate;
+	}
+
+	public double getMeanAccuracy()
+	{
+		return mean(accuracies());
+	}
+
+	public double getAccuracyStandardDeviation()
+	{
+		return standardDeviation(accuracies());
+	}
+
+	public double getMeanPrecision()
+	{
+		return mean(precisions());
+	}
+
+	public double getPrecisionStandardDeviation()
+	{
+		return standardDeviation(precisions());
+	}
+
+	public double getMeanRecall()
+	{
+		return mean(recalls());
+	}
+
+	public double getRecallStandardDeviation()
+	{
+		return standardDeviation(recalls());
+	}
+
+	public String toString()
+	{
+		StringBuilder returnStringBuilder = new StringBuilder();
+		for (int i = 0; i < folds.size(); ++i)
+		{
+			returnStringBuilder.append("Fold " + (i + 1) + ": " + folds.get(i) + "\n");
+		}
+		returnStringBuilder.append("All folds: " + aggregate + "\n");
+		returnStringBuilder.append(String.format("Per fold: accuracy %.2f%% +/- %.2f%%, precision %.2f%% +/- %.2f%%, "
+													+ "recall %.2f%% +/- %.2f%%", 100 * getMeanAccuracy(),
+													100 * getAccuracyStandardDeviation(), 100 * getMeanPrecision(),
+													100 * getPrecisionStandardDeviation(), 100 * getMeanRecall(),
+													100 * getRecallStandardDeviation()));
+		return returnStringBuilder.toString();
+	}
+
+	private double[] accuracies()
+	{
+		double[] values = new double[folds.size()];
+		for (int i = 0; i < values.length; ++i)
+		{
+			values[i] = folds.get(i).getAccuracy();
+		}
+		return values;
+	}
+
+	private double[] precisions()
+	{
+		double[] values = new double[folds.size()];
+		for (int i = 0; i < values.length; ++i)
+		{
+			values[i] = folds.get(i).getPrecision();
+		}
+		return values;
+	}
+
+	private double[] recalls()
+	{
+		double[] values = new double[folds.size()];
+		for (int i = 0; i < values.length; ++i)
+		{
+			values[i] = folds.get(i).getRecall();
+		}
+		return values;
+	}
+
+	private static double mean(double[] values)
+	{
+		double sum = 0;
+		for (double value : values)
+		{
+			sum += value;
+		}
+		return (values.length == 0) ? 0 : sum / values.length;
+	}
+
+	// sample standard deviation, 0 for fewer than 2 values
+	private static double standardDeviation(double[] values)
+	{
+		if (values.length < 2)
+		{
+			return 0;
+		}
+		double mean         = mean(values);
+		double sumOfSquares   = 0;
+		for (double value : values)
+		{
+			sumOfSquares += (value - mean) * (value - mean);
+		}
+		return Math.sqrt(sumOfSquares / (values.length - 1));
+	}
+}
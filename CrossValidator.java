@@ -0,0 +1,197 @@
+package spamfilter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import spamfilter.FilteredDocument.DocumentType;
+
+// k-fold cross-validation of the model built from a pair of datasets, folders, mbox files or Maildirs (see
+// MailCorpus). the messages of each dataset are sorted by name and dealt to the folds in turn, so every fold holds
+// out about the same share of ham and spam. the words of each fold are counted once, and the model of a fold is
+// built from the counts of every document minus the counts of the fold, which is the model training on the other
+// folds would build. the only other pass over a document is classifying it against the model of the fold holding
+// it out
+public class CrossValidator
+{
+	private String hamDatasetPath;
+	private String spamDatasetPath;
+	private String stopWordsPath;
+	private int folds;
+	private int hashBuckets;
+
+	public CrossValidator(String hamDatasetPath, String spamDatasetPath, String stopWordsPath, int folds)
+	{
+		this(hamDatasetPath, spamDatasetPath, stopWordsPath, folds, 0);
+	}
+
+	// same as the constructor above but the words are hashed into the specified number of buckets unless it is 0,
+	// see HashedTermIndex
+	public CrossValidator(String hamDatasetPath, String spamDatasetPath, String stopWordsPath, int folds,
+			int hashBuckets)
+	{
+		if (folds < 2)
+		{
+			throw new IllegalArgumentException("folds must be at least 2: " + folds);
+		}
+		this.hamDatasetPath  = hamDatasetPath;
+		this.spamDatasetPath = spamDatasetPath;
+		this.stopWordsPath   = stopWordsPath;
+		this.folds           = folds;
+		this.hashBuckets     = hashBuckets;
+	}
+
+	// counts and then evaluates the folds, each on its own task, on at most the specified number of threads
+	public CrossValidationReport run(int parallelism) throws InterruptedException
+	{
+		final MailMessage[] hamMessages  = listSorted(hamDatasetPath);
+		final MailMessage[] spamMessages = listSorted(spamDatasetPath);
+		final TermDictionary stopWords = SpamChecker.parseStopWords(stopWordsPath);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, folds)));
+		try
+		{
+			List<Callable<WordCounts>> countTasks = new ArrayList<Callable<WordCounts>>();
+			for (int fold = 0; fold < folds; ++fold)
+			{
+				final int currentFold = fold;
+				countTasks.add(new Callable<WordCounts>()
+				{
+					@Override
+					public WordCounts call()
+					{
+						return countFold(currentFold, hamMessages, spamMessages, stopWords);
+					}
+				});
+			}
+			final List<WordCounts> foldCounts = getAll(executor.invokeAll(countTasks));
+			final WordCounts allCounts        = new WordCounts(hashBuckets);
+			for (WordCounts counts : foldCounts)
+			{
+				allCounts.merge(counts);
+			}
+
+			List<Callable<ConfusionMatrix>> evaluationTasks = new ArrayList<Callable<ConfusionMatrix>>();
+			for (int fold = 0; fold < folds; ++fold)
+			{
+				final int currentFold = fold;
+				evaluationTasks.add(new Callable<ConfusionMatrix>()
+				{
+					@Override
+					public ConfusionMatrix call()
+					{
+						return evaluateFold(currentFold, allCounts, foldCounts.get(currentFold), hamMessages, spamMessages);
+					}
+				});
+			}
+			return new CrossValidationReport(getAll(executor.invokeAll(evaluationTasks)));
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private WordCounts countFold(int fold, MailMessage[] hamMessages, MailMessage[] spamMessages,
+			TermDictionary stopWords)
+	{
+		WordCounts counts = new WordCounts(hashBuckets);
+		for (int i = fold; i < hamMessages.length; i += folds)
+		{
+			SpamChecker.countDocument(counts, hamMessages[i], DocumentType.HAM, stopWords);
+		}
+		for (int i = fold; i < spamMessages.length; i += folds)
+		{
+			SpamChecker.countDocument(counts, spamMessages[i], DocumentType.SPAM, stopWords);
+		}
+		return counts;
+	}
+
+	// classifies the documents held out by the specified fold against the model of every other fold
+	private ConfusionMatrix evaluateFold(int fold, WordCounts allCounts, WordCounts foldCounts,
+			MailMessage[] hamMessages, MailMessage[] spamMessages)
+	{
+		WordCounts trainingCounts = allCounts.copy();
+		trainingCounts.subtract(foldCounts);
+		int heldOutHam            = countHeldOut(fold, hamMessages.length);
+		int heldOutSpam           = countHeldOut(fold, spamMessages.length);
+		ModelSnapshot model       = SpamChecker.createSnapshot(trainingCounts, hamMessages.length - heldOutHam,
+																spamMessages.length - heldOutSpam, hamDatasetPath,
+																spamDatasetPath, null);
+		int hamAsSpam  = countSpam(fold, hamMessages, model);
+		int spamAsSpam = countSpam(fold, spamMessages, model);
+		return new ConfusionMatrix(heldOutHam - hamAsSpam, hamAsSpam, heldOutSpam - spamAsSpam, spamAsSpam);
+	}
+
+	// number of the specified number of documents dealt to the specified fold
+	private int countHeldOut(int fold, int documents)
+	{
+		return (documents - fold + folds - 1) / folds;
+	}
+
+	// number of the messages dealt to the specified fold classified as spam against the specified model
+	private int countSpam(int fold, MailMessage[] messages, ModelSnapshot model)
+	{
+		int spam = 0;
+		for (int i = fold; i < messages.length; i += folds)
+		{
+			try
+			{
+				if (SpamChecker.classifyMessage(messages[i], model).isSpam())
+				{
+					++spam;
+				}
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+		return spam;
+	}
+
+	// the messages of the specified dataset sorted by name, so that folds do not depend on the order files are
+	// listed in
+	private static MailMessage[] listSorted(String datasetPath)
+	{
+		MailMessage[] messages = MailCorpus.open(datasetPath).list();
+		Arrays.sort(messages, new Comparator<MailMessage>()
+		{
+			@Override
+			public int compare(MailMessage message1, MailMessage message2)
+			{
+				return message1.getName().compareTo(message2.getName());
+			}
+		});
+		return messages;
+	}
+
+	// results of the specified completed tasks, rethrowing the failure of a task
+	private static <T> List<T> getAll(List<Future<T>> futures) throws InterruptedException
+	{
+		List<T> results = new ArrayList<T>();
+		for (Future<T> future : futures)
+		{
+			try
+			{
+				results.add(future.get());
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException)e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+}
@@ -0,0 +1,252 @@
+package spamfilter;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// parses decimal numbers from ASCII bytes in place, without creating a string, to exactly the values
+// Integer.parseInt and Double.parseDouble return. doubles are computed with the Clinger fast path when the
+// significand and the power of ten are both exact doubles, and otherwise with the Eisel-Lemire algorithm, which
+// multiplies the significand by a 128 bit approximation of the power of ten and gives up whenever that
+// approximation leaves the rounding in doubt. anything given up on, and anything unusual such as a hexadecimal
+// number, NaN or more than 19 significant digits, is handed to the JDK methods instead, which also throw the same
+// NumberFormatException for malformed input
+public class DecimalParser
+{
+	private static final int MIN_POWER_OF_TEN = -342;
+	private static final int MAX_POWER_OF_TEN = 308;
+	private static final double[] EXACT_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+		1e20, 1e21, 1e22
+	};
+	// the most significant 128 bits of every power of five from MIN_POWER_OF_TEN to MAX_POWER_OF_TEN, normalized so
+	// that the top bit is set, split into their high and low 64 bits
+	private static final long[] POWER_OF_FIVE_HIGH = new long[MAX_POWER_OF_TEN - MIN_POWER_OF_TEN + 1];
+	private static final long[] POWER_OF_FIVE_LOW = new long[MAX_POWER_OF_TEN - MIN_POWER_OF_TEN + 1];
+
+	static
+	{
+		for (int q = MIN_POWER_OF_TEN; q <= MAX_POWER_OF_TEN; ++q)
+		{
+			BigInteger approximation;
+			if (q < 0)
+			{
+				// 2^b / 5^-q rounded up, for a b keeping at least 128 bits of the quotient
+				BigInteger powerOfFive = BigInteger.valueOf(5).pow(-q);
+				int z                  = powerOfFive.subtract(BigInteger.ONE).bitLength();
+				int b                  = (q >= -27) ? z + 127 : 2 * z + 128;
+				approximation = BigInteger.ONE.shiftLeft(b).divide(powerOfFive).add(BigInteger.ONE);
+			}
+			else
+			{
+				approximation = BigInteger.valueOf(5).pow(q).shiftLeft(128);
+			}
+			// truncate to the most significant 128 bits
+			approximation = approximation.shiftRight(Math.max(0, approximation.bitLength() - 128));
+			if (approximation.bitLength() < 128)
+			{
+				approximation = approximation.shiftLeft(128 - approximation.bitLength());
+			}
+			POWER_OF_FIVE_HIGH[q - MIN_POWER_OF_TEN] = approximation.shiftRight(64).longValue();
+			POWER_OF_FIVE_LOW[q - MIN_POWER_OF_TEN]  = approximation.longValue();
+		}
+	}
+
+	// parses the ASCII bytes of the specified buffer from start, inclusive, to end, exclusive, like
+	// Integer.parseInt. the position of the buffer is not used
+	public static int parseInt(ByteBuffer buffer, int start, int end)
+	{
+		int i         = start;
+		boolean minus = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+		{
+			minus = buffer.get(i) == '-';
+			++i;
+		}
+		// 9 digits cannot overflow, anything longer is left to the JDK
+		if (i == end || end - i > 9)
+		{
+			return Integer.parseInt(toString(buffer, start, end));
+		}
+		int value = 0;
+		for (; i < end; ++i)
+		{
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9)
+			{
+				return Integer.parseInt(toString(buffer, start, end));
+			}
+			value = value * 10 + digit;
+		}
+		return minus ? -value : value;
+	}
+
+	// parses the ASCII bytes of the specified buffer from start, inclusive, to end, exclusive, like
+	// Double.parseDouble. the position of the buffer is not used
+	public static double parseDouble(ByteBuffer buffer, int start, int end)
+	{
+		int i         = start;
+		boolean minus = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+		{
+			minus = buffer.get(i) == '-';
+			++i;
+		}
+		long significand  = 0;
+		int digits        = 0;				// significant digits in significand, leading zeros left out
+		int power         = 0;				// of ten the significand is multiplied by
+		boolean anyDigits = false;
+		boolean point     = false;
+		for (; i < end; ++i)
+		{
+			byte character = buffer.get(i);
+			if (character >= '0' && character <= '9')
+			{
+				anyDigits = true;
+				if (significand != 0 || character != '0')
+				{
+					if (++digits > 19)
+					{
+						return Double.parseDouble(toString(buffer, start, end));
+					}
+					significand = significand * 10 + (character - '0');
+				}
+				if (point)
+				{
+					--power;
+				}
+			}
+			else if (character == '.' && !point)
+			{
+				point = true;
+			}
+			else
+			{
+				break;
+			}
+		}
+		if (!anyDigits)
+		{
+			return Double.parseDouble(toString(buffer, start, end));
+		}
+		if (i < end && (buffer.get(i) == 'E' || buffer.get(i) == 'e'))
+		{
+			++i;
+			boolean negativeExponent = false;
+			if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+			{
+				negativeExponent = buffer.get(i) == '-';
+				++i;
+			}
+			if (i == end || end - i > 4)
+			{
+				return Double.parseDouble(toString(buffer, start, end));
+			}
+			int exponent = 0;
+			for (; i < end; ++i)
+			{
+				int digit = buffer.get(i) - '0';
+				if (digit < 0 || digit > 9)
+				{
+					return Double.parseDouble(toString(buffer, start, end));
+				}
+				exponent = exponent * 10 + digit;
+			}
+			power += negativeExponent ? -exponent : exponent;
+		}
+		if (i != end)
+		{
+			return Double.parseDouble(toString(buffer, start, end));
+		}
+		if (significand == 0)
+		{
+			return minus ? -0.0 : 0.0;
+		}
+		double value = toDouble(significand, power);
+		if (Double.isNaN(value))
+		{
+			return Double.parseDouble(toString(buffer, start, end));
+		}
+		return minus ? -value : value;
+	}
+
+	// the double nearest to significand * 10^power, for an unsigned significand of at most 19 digits other than
+	// 0, or NaN if it cannot be told apart from its neighbors here
+	private static double toDouble(long significand, int power)
+	{
+		if (power >= -22 && power <= 22 && Long.compareUnsigned(significand, 1L << 53) <= 0)
+		{
+			double value = significand;
+			return (power < 0) ? value / EXACT_POWERS_OF_TEN[-power] : value * EXACT_POWERS_OF_TEN[power];
+		}
+		if (power < MIN_POWER_OF_TEN || power > MAX_POWER_OF_TEN)
+		{
+			return Double.NaN;
+		}
+		// 1024 + 63 plus floor(log2(5^power)) + power, the exponent of the normalized product before shifting
+		long exponent      = (((152170L + 65536L) * power) >> 16) + 1024 + 63;
+		int leadingZeros   = Long.numberOfLeadingZeros(significand);
+		long shifted       = significand << leadingZeros;
+		long factorHigh    = POWER_OF_FIVE_HIGH[power - MIN_POWER_OF_TEN];
+		long lower         = shifted * factorHigh;
+		long upper         = unsignedMultiplyHigh(shifted, factorHigh);
+		// the leading 55 bits are exact unless the 9 bits below them are all ones, in which case the low half of the
+		// power of five decides
+		if ((upper & 0x1FF) == 0x1FF && Long.compareUnsigned(lower + shifted, lower) < 0)
+		{
+			long factorLow     = POWER_OF_FIVE_LOW[power - MIN_POWER_OF_TEN];
+			long productLow    = shifted * factorLow;
+			long productMiddle = lower + unsignedMultiplyHigh(shifted, factorLow);
+			long productHigh   = upper;
+			if (Long.compareUnsigned(productMiddle, lower) < 0)
+			{
+				++productHigh;
+			}
+			if (productMiddle + 1 == 0 && (productHigh & 0x1FF) == 0x1FF
+					&& Long.compareUnsigned(productLow + shifted, productLow) < 0)
+			{
+				return Double.NaN;
+			}
+			upper = productHigh;
+			lower = productMiddle;
+		}
+		long upperBit = upper >>> 63;
+		long mantissa = upper >>> (upperBit + 9);
+		leadingZeros += (int)(1 ^ upperBit);
+		// exactly halfway between two doubles, which needs the exact value to round to even
+		if (lower == 0 && (upper & 0x1FF) == 0 && (mantissa & 3) == 1)
+		{
+			return Double.NaN;
+		}
+		mantissa += mantissa & 1;
+		mantissa >>>= 1;
+		if (mantissa >= (1L << 53))
+		{
+			mantissa = 1L << 52;
+			--leadingZeros;
+		}
+		mantissa &= ~(1L << 52);
+		long biasedExponent = exponent - leadingZeros;
+		// subnormal and infinite results are left to the JDK
+		if (biasedExponent < 1 || biasedExponent > 2046)
+		{
+			return Double.NaN;
+		}
+		return Double.longBitsToDouble(mantissa | (biasedExponent << 52));
+	}
+
+	private static long unsignedMultiplyHigh(long x, long y)
+	{
+		return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+
+	private static String toString(ByteBuffer buffer, int start, int end)
+	{
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; ++i)
+		{
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,36 @@
+package spamfilter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// JDK Flight Recorder event covering the creation of a FilteredDocument, split into reading the file and
+// tokenizing its contents, or a training document streamed into WordCounts, which is read and tokenized in a
+// single pass and has no separate read time. the filtered document of a classified document is marked as such,
+// so that classification traffic can be told apart from training
+@Name("spamfilter.DocumentFilter")
+@Label("Document Filtering")
+@Category("Spam Filter")
+@Description("Reading a document file and tokenizing its contents")
+public class DocumentFilterEvent extends Event
+{
+	@Label("Document Path")
+	String documentPath;
+
+	@Label("Characters")
+	int characters;
+
+	@Label("Tokens")
+	int tokens;
+
+	@Label("Read Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long readTime;
+
+	@Label("Classified")
+	@Description("Filtered for a classified document rather than for training")
+	boolean classified;
+}
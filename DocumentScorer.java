@@ -0,0 +1,87 @@
+package spamfilter;
+
+import spamfilter.ClassifiedDocument.ScoringOutcome;
+
+// TokenSink that accumulates the log probabilities of a document being ham and spam from the words it receives,
+// and from the bigrams of consecutive words when the model has them. a token that is not in the vocabulary breaks
+// a bigram, as any token that is not an acceptable word does when bigrams are counted
+public class DocumentScorer implements TokenSink
+{
+	private Vocabulary vocabulary;
+	private BigramTable bigrams;				// null to score words only
+	private int previousId;						// id of the previous token if it is in the vocabulary, otherwise -1
+	private double hamScore;
+	private double spamScore;
+	private int tokenCount;
+	private int vocabularyHitCount;
+
+	public DocumentScorer(Vocabulary vocabulary, double hamProbability, double spamProbability)
+	{
+		this(vocabulary, null, hamProbability, spamProbability);
+	}
+
+	// scores against every feature of the specified model
+	public DocumentScorer(ModelSnapshot model)
+	{
+		this(model.getVocabulary(), model.getBigrams(), model.getHamProbability(), model.getSpamProbability());
+	}
+
+	public DocumentScorer(Vocabulary vocabulary, BigramTable bigrams, double hamProbability, double spamProbability)
+	{
+		this.vocabulary = vocabulary;
+		this.bigrams    = bigrams;
+		this.previousId = -1;
+		this.hamScore   = Math.log10(hamProbability);
+		this.spamScore  = Math.log10(spamProbability);
+	}
+
+	public double getHamScore()
+	{
+		return hamScore;
+	}
+
+	public double getSpamScore()
+	{
+		return spamScore;
+	}
+
+	public int getTokenCount()
+	{
+		return tokenCount;
+	}
+
+	// number of tokens found in the vocabulary
+	public int getVocabularyHitCount()
+	{
+		return vocabularyHitCount;
+	}
+
+	// whether every token of the document was scored. always the case unless scoring under ScoringLimits
+	public ScoringOutcome getOutcome()
+	{
+		return ScoringOutcome.COMPLETE;
+	}
+
+	@Override
+	public void acceptToken(char[] characters, int offset, int length)
+	{
+		++tokenCount;
+		int id = vocabulary.find(characters, offset, length);
+		if (id != -1)
+		{
+			++vocabularyHitCount;
+			hamScore  += vocabulary.getHamLogProbability(id);
+			spamScore += vocabulary.getSpamLogProbability(id);
+			if (bigrams != null && previousId != -1)
+			{
+				int bigram = bigrams.find(BigramTable.key(previousId, id));
+				if (bigram != -1)
+				{
+					hamScore  += bigrams.getHamLogProbability(bigram);
+					spamScore += bigrams.getSpamLogProbability(bigram);
+				}
+			}
+		}
+		previousId = id;
+	}
+}
@@ -0,0 +1,215 @@
+package spamfilter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+// single pass state machine that removes XML tags from a document, splits what remains on whitespace and trims
+// every word down to its first and last letters, handing each resulting token to a TokenSink without creating
+// any intermediate string. an instance reuses its buffers between documents and must not be shared by threads
+public class DocumentTokenizer
+{
+	private static final int READ_BUFFER_SIZE    = 8192;
+	private static final int INITIAL_BUFFER_SIZE = 64;
+	private char[] readBuffer;
+	private char[] tagBuffer;			// characters since the last unclosed '<', kept if the tag is never closed
+	private int tagLength;
+	private char[] wordBuffer;			// characters of the current whitespace separated word
+	private int wordLength;
+	private boolean inTag;
+	private boolean inQuotes;
+	private char previousCharacter;
+	private long chunkStart;			// characters tokenized before the chunk being tokenized
+	private boolean stopped;
+	private TokenSink sink;
+
+	public DocumentTokenizer()
+	{
+		this.readBuffer = new char[READ_BUFFER_SIZE];
+		this.tagBuffer  = new char[INITIAL_BUFFER_SIZE];
+		this.wordBuffer = new char[INITIAL_BUFFER_SIZE];
+	}
+
+	// tokenize every character read from the specified reader, unless the sink stops it. the reader is not closed
+	public void tokenize(Reader reader, TokenSink sink) throws IOException
+	{
+		start(sink);
+		int read;
+		while (!stopped && (read = reader.read(readBuffer, 0, readBuffer.length)) != -1)
+		{
+			for (int i = 0; i < read && !stopped; ++i)
+			{
+				accept(readBuffer[i]);
+			}
+			chunkStart += read;
+		}
+		finish();
+	}
+
+	// tokenize the specified character sequence, unless the sink stops it
+	public void tokenize(CharSequence contents, TokenSink sink)
+	{
+		start(sink);
+		int length = contents.length();
+		while (!stopped && chunkStart < length)
+		{
+			int chunkEnd = (int)Math.min(length, chunkStart + READ_BUFFER_SIZE);
+			for (int i = (int)chunkStart; i < chunkEnd && !stopped; ++i)
+			{
+				accept(contents.charAt(i));
+			}
+			chunkStart = chunkEnd;
+		}
+		finish();
+	}
+
+	// called by the sink to end the tokenization once the current token is handed over. the rest of the document
+	// is neither read nor tokenized
+	public void stop()
+	{
+		stopped = true;
+	}
+
+	// number of characters from the start of the document that can no longer become part of a token. this trails
+	// the characters actually tokenized by up to a chunk of READ_BUFFER_SIZE characters, and leaves out those of
+	// a word or tag still being read, so the rest of the document is at most its length minus this value
+	public long getCharactersDone()
+	{
+		return Math.max(0, chunkStart - tagLength - wordLength);
+	}
+
+	private void start(TokenSink sink)
+	{
+		this.sink              = sink;
+		this.tagLength         = 0;
+		this.wordLength        = 0;
+		this.inTag             = false;
+		this.inQuotes          = false;
+		this.previousCharacter = 0;
+		this.chunkStart        = 0;
+		this.stopped           = false;
+	}
+
+	// a '<' opens a tag that is dropped along with its contents once a '>' closes it. chevrons between quotes
+	// inside a tag are ignored, and a second '<' outside quotes keeps the text of the first one as is
+	private void accept(char character)
+	{
+		if (!inTag)
+		{
+			if (character == '<')
+			{
+				inTag = true;
+				appendToTag(character);
+			}
+			else
+			{
+				acceptText(character);
+			}
+		}
+		else if (character == '<' && !inQuotes)
+		{
+			flushTag();
+			appendToTag(character);
+		}
+		else if (character == '>' && !inQuotes)
+		{
+			tagLength = 0;
+			inTag     = false;
+		}
+		else
+		{
+			if ((character == '\'' || character == '\"') && previousCharacter != '\\')
+			{
+				inQuotes = !inQuotes;
+			}
+			appendToTag(character);
+		}
+		previousCharacter = character;
+	}
+
+	private void finish()
+	{
+		if (!stopped)
+		{
+			flushTag();
+			inTag = false;
+			emitWord();
+		}
+		this.sink = null;
+	}
+
+	private void appendToTag(char character)
+	{
+		if (tagLength == tagBuffer.length)
+		{
+			tagBuffer = Arrays.copyOf(tagBuffer, tagBuffer.length * 2);
+		}
+		tagBuffer[tagLength++] = character;
+	}
+
+	// treat the characters of an unclosed tag as ordinary text
+	private void flushTag()
+	{
+		for (int i = 0; i < tagLength; ++i)
+		{
+			acceptText(tagBuffer[i]);
+		}
+		tagLength = 0;
+		inQuotes  = false;
+	}
+
+	private void acceptText(char character)
+	{
+		if (isWhitespace(character))
+		{
+			emitWord();
+		}
+		else
+		{
+			if (wordLength == wordBuffer.length)
+			{
+				wordBuffer = Arrays.copyOf(wordBuffer, wordBuffer.length * 2);
+			}
+			wordBuffer[wordLength++] = character;
+		}
+	}
+
+	// trim any non uppercase or lowercase letter characters and an apostrophized "s" from the ends of the current
+	// word and emit what remains, if anything
+	private void emitWord()
+	{
+		if (wordLength == 0)
+		{
+			return;
+		}
+		// find the beginning of the word
+		int i = 0;
+		while (i < wordLength && !SpamChecker.isAlphabeticCharacter(wordBuffer[i]))
+		{
+			++i;
+		}
+		// find the end of the word
+		int j = wordLength - 1;
+		while (j >= 0 && !SpamChecker.isAlphabeticCharacter(wordBuffer[j]))
+		{
+			--j;
+		}
+		// trim apostrophized "s" from the end
+		if (j > 1 && wordBuffer[j - 1] == '\'' && (wordBuffer[j] == 's' || wordBuffer[j] == 'S'))
+		{
+			j -= 2;
+		}
+		if (i <= j)
+		{
+			sink.acceptToken(wordBuffer, i, j - i + 1);
+		}
+		wordLength = 0;
+	}
+
+	// the characters matched by the "\\s" regular expression class
+	static boolean isWhitespace(char character)
+	{
+		return character == ' ' || character == '\n' || character == '\t' || character == '\r' ||
+				character == '\f' || character == '\u000B';
+	}
+}
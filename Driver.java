@@ -6,7 +6,11 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Driver
 {
@@ -16,6 +20,8 @@ public class Driver
 		final String TEST_SPAM_DATASET     = "./dataset1000/spam";
 		final String MODEL_EXPORT_LOCATION = "./dataset1000/model.txt";
 		final String IGNORE_WORDS_FILE     = "./dataset1000/stopwords.txt";
+		final int CLASSIFICATIONS_IN_FLIGHT = 256;
+		final int CROSS_VALIDATION_FOLDS    = 10;
 		
 		// display the number of files in the Ham and Span folders
 		File hamFolder = new File(TEST_HAM_DATASET);
@@ -37,12 +43,14 @@ public class Driver
 		testChecker.exportModelToTextFile(MODEL_EXPORT_LOCATION);
 		System.out.println(" Done");
 		
-		// use SpamChecker object to classify every document in testdata/test_document
+		// use SpamChecker object to classify every document in testdata/test_document on every available core
 		File testDocumentsFolder = new File("./testdata/test_documents");
-		File[] testDocuments = testDocumentsFolder.listFiles();
+		final File[] testDocuments = testDocumentsFolder.listFiles();
 		System.out.print("\nFiles in testdata/test_documents folder: ");
 		System.out.println(testDocuments.length);
 		System.out.print("\nClassifying every document in testdata/test_documents folder and\nwriting results to \"testdata/results.txt\"...");
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		boolean classified       = false;
 		try
 		{
 			File exportFile = new File("./testdata/result.txt");
@@ -50,42 +58,72 @@ public class Driver
 			{
 				exportFile.createNewFile();
 			}
-			BufferedWriter exportFileBuffer = new BufferedWriter(new FileWriter(exportFile, false));
-			
-			for(int i = 0; i < testDocuments.length; i++)
+			final BufferedWriter exportFileBuffer = new BufferedWriter(new FileWriter(exportFile, false));
+			// results are delivered in the order of testDocuments, which the accuracy analysis below relies on
+			testChecker.classifyDocuments(Arrays.stream(testDocuments).map(File::toPath), executor,
+					CLASSIFICATIONS_IN_FLIGHT, true, new ClassificationSink()
 			{
-				
-				StringBuilder line = new StringBuilder();
-				line.append(i + 1);
-				line.append("   ");
-				line.append(testDocuments[i].getName());
-				line.append("   ");
-				ClassifiedDocument classifiedDocument = testChecker.classifyDocument(testDocuments[i].getAbsolutePath());
-				if (classifiedDocument.getHamProbability() > classifiedDocument.getSpamProbability())
-				{
-					line.append("ham");
-				}
-				else
-				{
-					line.append("spam");
-				}
-				line.append("   ");
-				line.append(classifiedDocument.getHamProbability());
-				line.append("   ");
-				line.append(classifiedDocument.getSpamProbability());
-				exportFileBuffer.write(line.toString());
-				if (i != (testDocuments.length - 1))
+				@Override
+				public void accept(int i, ClassifiedDocument classifiedDocument)
 				{
-					exportFileBuffer.newLine();
+					StringBuilder line = new StringBuilder();
+					line.append(i + 1);
+					line.append("   ");
+					line.append(testDocuments[i].getName());
+					line.append("   ");
+					if (classifiedDocument.getHamProbability() > classifiedDocument.getSpamProbability())
+					{
+						line.append("ham");
+					}
+					else
+					{
+						line.append("spam");
+					}
+					line.append("   ");
+					line.append(classifiedDocument.getHamProbability());
+					line.append("   ");
+					line.append(classifiedDocument.getSpamProbability());
+					try
+					{
+						exportFileBuffer.write(line.toString());
+						if (i != (testDocuments.length - 1))
+						{
+							exportFileBuffer.newLine();
+						}
+					}
+					catch (IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
 				}
-				exportFileBuffer.flush();
-			}
+			});
 			exportFileBuffer.close();
+			classified = true;
 		}
 		catch (IOException e)
 		{
 			e.printStackTrace();
 		}
+		catch (UncheckedIOException e)
+		{
+			e.getCause().printStackTrace();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			e.printStackTrace();
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		if (!classified)
+		{
+			// a document that failed to classify has no line in result.txt, so the lines after it would be
+			// analyzed against the wrong documents
+			System.out.println("Failed, the accuracy analysis and cross-validation are skipped");
+			return;
+		}
 		System.out.println("Done");
 		
 		// measure the accuracy of the SpamChecker and display the results, including correct classification counts,
@@ -183,5 +221,19 @@ public class Driver
 				+ "       ham         spam        \n"
 				+ "ham    " + correctHam + "         " + incorrectHam + "\n"
 				+ "spam   " + incorrectSpam + "          " + correctSpam);
+
+		// estimate how much the accuracy depends on the documents trained on by cross-validating the datasets
+		System.out.println("\n\nCross-validating the datasets in " + CROSS_VALIDATION_FOLDS + " folds...");
+		try
+		{
+			CrossValidator validator = new CrossValidator(TEST_HAM_DATASET, TEST_SPAM_DATASET, IGNORE_WORDS_FILE,
+															CROSS_VALIDATION_FOLDS);
+			System.out.println(validator.run(Runtime.getRuntime().availableProcessors()));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			e.printStackTrace();
+		}
 	}
 }
\ No newline at end of file
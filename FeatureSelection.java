@@ -0,0 +1,148 @@
+package spamfilter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// selects the most informative words of a vocabulary, leaving out the words that barely tell ham from spam. words
+// are ranked by one of the criteria below, computed from their ham and spam frequencies, and the vocabulary keeps
+// the words scoring at least minScore, at most maxWords of them. see SpamChecker.setFeatureSelection
+public class FeatureSelection
+{
+	public enum Criterion
+	{
+		// mutual information in bits between a word occurrence being this word and it being in a spam document
+		MUTUAL_INFORMATION,
+		// chi-square statistic of the 2x2 table of this word against every other word, in ham and in spam
+		CHI_SQUARE,
+		// absolute difference between the smoothed log10 probabilities of the word given spam and given ham, the
+		// most one occurrence of the word can move a document towards either class
+		LOG_ODDS_RATIO
+	}
+
+	private final Criterion criterion;
+	private final int maxWords;				// 0 for no limit
+	private final double minScore;
+
+	// a maxWords of 0 keeps every word scoring at least minScore
+	public FeatureSelection(Criterion criterion, int maxWords, double minScore)
+	{
+		if (maxWords < 0)
+		{
+			throw new IllegalArgumentException("maxWords cannot be negative: " + maxWords);
+		}
+		this.criterion = criterion;
+		this.maxWords  = maxWords;
+		this.minScore  = minScore;
+	}
+
+	public Criterion getCriterion()
+	{
+		return criterion;
+	}
+
+	public int getMaxWords()
+	{
+		return maxWords;
+	}
+
+	public double getMinScore()
+	{
+		return minScore;
+	}
+
+	// returns a new vocabulary holding the selected words of the specified one, in the same order, with their
+	// frequencies and without probabilities
+	public Vocabulary select(Vocabulary vocabulary)
+	{
+		long hamTotal         = vocabulary.getTotalHamFrequency();
+		long spamTotal        = vocabulary.getTotalSpamFrequency();
+		final double[] scores = new double[vocabulary.size()];
+		Integer[] rankedIds   = new Integer[vocabulary.size()];
+		int candidates        = 0;
+		for (int id = 0; id < vocabulary.size(); ++id)
+		{
+			scores[id] = score(vocabulary.getHamFrequency(id), vocabulary.getSpamFrequency(id), hamTotal, spamTotal,
+								vocabulary.size());
+			if (scores[id] >= minScore)
+			{
+				rankedIds[candidates++] = id;
+			}
+		}
+		// the best scores first, ties kept in id order so the selection is deterministic
+		Arrays.sort(rankedIds, 0, candidates, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer id1, Integer id2)
+			{
+				int comparison = Double.compare(scores[id2], scores[id1]);
+				return (comparison != 0) ? comparison : id1 - id2;
+			}
+		});
+		int selected      = (maxWords == 0) ? candidates : Math.min(candidates, maxWords);
+		int[] selectedIds = new int[selected];
+		for (int i = 0; i < selected; ++i)
+		{
+			selectedIds[i] = rankedIds[i];
+		}
+		Arrays.sort(selectedIds);
+		return vocabulary.withWords(selectedIds);
+	}
+
+	// score of a word with the specified frequencies in a vocabulary of the specified size whose frequencies add
+	// up to the specified totals
+	public double score(int hamFrequency, int spamFrequency, long hamTotal, long spamTotal, int vocabularySize)
+	{
+		switch (criterion)
+		{
+			case MUTUAL_INFORMATION:
+				return mutualInformation(hamFrequency, spamFrequency, hamTotal, spamTotal);
+			case CHI_SQUARE:
+				return chiSquare(hamFrequency, spamFrequency, hamTotal, spamTotal);
+			default:
+				return logOddsRatio(hamFrequency, spamFrequency, hamTotal, spamTotal, vocabularySize);
+		}
+	}
+
+	private static double mutualInformation(double hamFrequency, double spamFrequency, double hamTotal, double spamTotal)
+	{
+		double total = hamTotal + spamTotal;
+		double word  = hamFrequency + spamFrequency;
+		return mutualInformationTerm(spamFrequency, word, spamTotal, total) +
+				mutualInformationTerm(hamFrequency, word, hamTotal, total) +
+				mutualInformationTerm(spamTotal - spamFrequency, total - word, spamTotal, total) +
+				mutualInformationTerm(hamTotal - hamFrequency, total - word, hamTotal, total);
+	}
+
+	// contribution of one cell of the 2x2 table, whose row and column add up to the specified totals
+	private static double mutualInformationTerm(double cell, double rowTotal, double columnTotal, double total)
+	{
+		if (cell <= 0)
+		{
+			return 0;
+		}
+		return (cell / total) * (Math.log(total * cell / (rowTotal * columnTotal)) / Math.log(2));
+	}
+
+	private static double chiSquare(double hamFrequency, double spamFrequency, double hamTotal, double spamTotal)
+	{
+		double total        = hamTotal + spamTotal;
+		double word         = hamFrequency + spamFrequency;
+		double otherHam     = hamTotal - hamFrequency;
+		double otherSpam    = spamTotal - spamFrequency;
+		double denominator  = word * (total - word) * hamTotal * spamTotal;
+		if (denominator == 0)
+		{
+			return 0;
+		}
+		double difference = spamFrequency * otherHam - hamFrequency * otherSpam;
+		return total * difference * difference / denominator;
+	}
+
+	private static double logOddsRatio(int hamFrequency, int spamFrequency, long hamTotal, long spamTotal,
+			int vocabularySize)
+	{
+		double hamProbability  = SpamChecker.conditionalProbability(hamFrequency, hamTotal, vocabularySize);
+		double spamProbability = SpamChecker.conditionalProbability(spamFrequency, spamTotal, vocabularySize);
+		return Math.abs(Math.log10(spamProbability) - Math.log10(hamProbability));
+	}
+}
@@ -0,0 +1,69 @@
+package spamfilter;
+
+// outcome of SpamChecker.evaluateFeatureSelection: the size and held-out accuracy of the current model and of the
+// model the feature selection would build
+public class FeatureSelectionReport
+{
+	private final FeatureSelection selection;
+	private final int documents;
+	private final int vocabularySizeBefore;
+	private final int vocabularySizeAfter;
+	private final int correctBefore;
+	private final int correctAfter;
+
+	public FeatureSelectionReport(FeatureSelection selection, int documents, int vocabularySizeBefore,
+			int vocabularySizeAfter, int correctBefore, int correctAfter)
+	{
+		this.selection            = selection;
+		this.documents            = documents;
+		this.vocabularySizeBefore = vocabularySizeBefore;
+		this.vocabularySizeAfter  = vocabularySizeAfter;
+		this.correctBefore        = correctBefore;
+		this.correctAfter         = correctAfter;
+	}
+
+	public FeatureSelection getSelection()
+	{
+		return selection;
+	}
+
+	// number of held-out documents classified
+	public int getDocuments()
+	{
+		return documents;
+	}
+
+	public int getVocabularySizeBefore()
+	{
+		return vocabularySizeBefore;
+	}
+
+	public int getVocabularySizeAfter()
+	{
+		return vocabularySizeAfter;
+	}
+
+	public double getAccuracyBefore()
+	{
+		return (documents == 0) ? 0 : (double)correctBefore / documents;
+	}
+
+	public double getAccuracyAfter()
+	{
+		return (documents == 0) ? 0 : (double)correctAfter / documents;
+	}
+
+	// accuracy of the selected model minus accuracy of the current one, negative if the selection costs accuracy
+	public double getAccuracyDelta()
+	{
+		return getAccuracyAfter() - getAccuracyBefore();
+	}
+
+	public String toString()
+	{
+		return String.format("%s top %d: vocabulary %d -> %d words (%.1f%%), accuracy on %d documents %.2f%% -> %.2f%% (%+.2f%%)",
+								selection.getCriterion(), selection.getMaxWords(), vocabularySizeBefore,
+								vocabularySizeAfter, 100.0 * vocabularySizeAfter / Math.max(1, vocabularySizeBefore),
+								documents, 100 * getAccuracyBefore(), 100 * getAccuracyAfter(), 100 * getAccuracyDelta());
+	}
+}
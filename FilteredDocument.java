@@ -2,7 +2,6 @@ package spamfilter;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -28,13 +27,54 @@ public class FilteredDocument
 	private String absolutePath;
 	private String documentContents;
 	private ArrayList<String> filteredWords;
+	private boolean classified;				// filtered for a ClassifiedDocument rather than for training
 
 	public FilteredDocument(String absolutePath)
 	{
-		this.absolutePath     = absolutePath;
-		this.documentContents = fileContentsToString(absolutePath);
-		String tagsRemoved    = removeXMLTags(this.documentContents);
-		this.filteredWords    = getFilteredWords(tagsRemoved);
+		this(absolutePath, false);
+	}
+
+	// same as the constructor above, recording the filtering in the metrics of classification if classified is set
+	// and in those of training otherwise
+	FilteredDocument(String absolutePath, boolean classified)
+	{
+		DocumentFilterEvent event = new DocumentFilterEvent();
+		event.begin();
+		boolean timed          = event.isEnabled() || SpamFilterMetrics.isRecording();
+		long readStartTime     = timed ? System.nanoTime() : 0;
+		this.absolutePath      = absolutePath;
+		this.classified        = classified;
+		this.documentContents  = fileContentsToString(absolutePath);
+		long tokenizeStartTime = timed ? System.nanoTime() : 0;
+		this.filteredWords     = getFilteredWords(this.documentContents);
+		if (timed)
+		{
+			recordFiltering(event, tokenizeStartTime - readStartTime, System.nanoTime() - tokenizeStartTime);
+		}
+	}
+
+	// filters a document already in memory. the name takes the place of the path, so two documents with the same
+	// name are equal
+	public FilteredDocument(String name, CharSequence documentContents)
+	{
+		this(name, documentContents, false);
+	}
+
+	// same as the constructor above, recording the filtering like FilteredDocument(String, boolean)
+	FilteredDocument(String name, CharSequence documentContents, boolean classified)
+	{
+		DocumentFilterEvent event = new DocumentFilterEvent();
+		event.begin();
+		boolean timed          = event.isEnabled() || SpamFilterMetrics.isRecording();
+		long tokenizeStartTime = timed ? System.nanoTime() : 0;
+		this.absolutePath      = name;
+		this.classified        = classified;
+		this.documentContents  = documentContents.toString();
+		this.filteredWords     = getFilteredWords(this.documentContents);
+		if (timed)
+		{
+			recordFiltering(event, 0, System.nanoTime() - tokenizeStartTime);
+		}
 	}
 
 	public String getAbsolutePath()
@@ -57,117 +97,70 @@ public class FilteredDocument
 		if (obj == null) {return false;}
 		if (!(obj instanceof FilteredDocument)) {return false;}
 		FilteredDocument other = (FilteredDocument) obj;
-		return this.getAbsolutePath() == other.getAbsolutePath();
+		return this.getAbsolutePath().equals(other.getAbsolutePath());
 	}
 
-	public int hashCode(FilteredDocument document)
+	public int hashCode()
 	{
-		return (this.getAbsolutePath().hashCode() * 31)
-				+ (this.getDocumentContents().hashCode() * 31);
+		return this.getAbsolutePath().hashCode();
 	}
 
-	// returns a string containing the contents of a specified file
-	private String fileContentsToString(String absolutePath)
+	private void recordFiltering(DocumentFilterEvent event, long readNanos, long tokenizationNanos)
 	{
-		List<String> fileLines = new ArrayList<String>();
-		StringBuffer returnStringBuffer = new StringBuffer();
-		try
+		if (classified)
 		{
-			BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(absolutePath)));
-			String currentLine;
-			while((currentLine = bufferedReader.readLine()) != null)
-			{
-				fileLines.add(currentLine);
-			}
-			bufferedReader.close();
+			SpamFilterMetrics.recordClassifiedDocumentFilter(readNanos, tokenizationNanos, this.filteredWords.size());
 		}
-		catch (IOException e)
+		else
 		{
-			e.printStackTrace();
+			SpamFilterMetrics.recordDocumentFilter(readNanos, tokenizationNanos, this.filteredWords.size());
 		}
-		for (String currentLine : fileLines)
+		event.end();
+		if (event.shouldCommit())
 		{
-			returnStringBuffer.append(currentLine);
-			returnStringBuffer.append("\n");
+			event.documentPath = absolutePath;
+			event.classified   = classified;
+			event.characters   = this.documentContents.length();
+			event.tokens       = this.filteredWords.size();
+			event.readTime     = readNanos;
+			event.commit();
 		}
-		return returnStringBuffer.toString();
 	}
 
-	// returns the contents of the specified string with all XML tags removed
-	private static String removeXMLTags(String documentContents)
+	// returns a string containing the contents of a specified file
+	private String fileContentsToString(String absolutePath)
 	{
-		String returnString     = "";
-		ArrayList<Integer> tags = new ArrayList<Integer>();
-		tags.add(-1);
-		Integer openingChevron  = null;
-		boolean inQuotes        = false;
-		for (int i = 0; i < documentContents.length(); ++i)
+		StringBuilder returnStringBuilder = new StringBuilder();
+		try
 		{
-			if (documentContents.charAt(i) == '<' && !inQuotes)
-			{
-				openingChevron = i;
-			}
-			else if (documentContents.charAt(i) == '>' && !inQuotes && openingChevron != null)
-			{
-				tags.add(openingChevron);
-				tags.add(i);
-				openingChevron = null;
-			}
-			else if ((documentContents.charAt(i) == '\'' || documentContents.charAt(i) == '\"') &&
-					documentContents.charAt(i-1) != '\\' && openingChevron != null)
+			BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(absolutePath)));
+			String currentLine;
+			while((currentLine = bufferedReader.readLine()) != null)
 			{
-				inQuotes = !inQuotes;
+				returnStringBuilder.append(currentLine);
+				returnStringBuilder.append("\n");
 			}
+			bufferedReader.close();
 		}
-		tags.add(documentContents.length());
-		for (int i = 0; i < tags.size(); i += 2)
+		catch (IOException e)
 		{
-			returnString += documentContents.substring(tags.get(i) + 1, tags.get(i + 1));
+			e.printStackTrace();
 		}
-		return returnString;
+		return returnStringBuilder.toString();
 	}
 
-	// search trough specified string for desirable words
+	// search trough specified string for desirable words, ignoring XML tags
 	private static ArrayList<String> getFilteredWords(String documentContents)
 	{
-		ArrayList<String> returnSet = new ArrayList<String>();
-		for (String currentWord : documentContents.split("\\s+"))
+		final ArrayList<String> returnList = new ArrayList<String>();
+		new DocumentTokenizer().tokenize(documentContents, new TokenSink()
 		{
-			currentWord = trimEnds(currentWord);
-			if (currentWord != "")
+			@Override
+			public void acceptToken(char[] characters, int offset, int length)
 			{
-				returnSet.add(currentWord);
+				returnList.add(new String(characters, offset, length));
 			}
-		}
-		return returnSet;
-	}
-
-	// remove any non uppercase or lowercase letter characters from the end of the specified string
-	// return an empty string if no uppercase or lowercase letter characters were found
-	private static String trimEnds(String word)
-	{
-		// find the beginning of a word
-		int i = 0;
-		while (i < word.length() && !SpamChecker.isAlphabeticCharacter(word.charAt(i)))
-		{
-			++i;
-		}
-		// find the end of the word
-		int j = word.length()- 1;
-		while (j >= 0 && !SpamChecker.isAlphabeticCharacter(word.charAt(j)))
-		{
-			--j;
-		}
-		// trim apostrophized "s" from the end
-		if (j > 1 && word.charAt(j - 1) == '\'' && (word.charAt(j) == 's' || word.charAt(j) == 'S'))
-		{
-			j -= 2;
-		}
-		// if the beginning found is after the end then return an empty string
-		if (i > j)
-		{
-			return "";
-		}
-		return word.substring(i, j + 1);
+		});
+		return returnList;
 	}
-}
\ No newline at end of file
+}
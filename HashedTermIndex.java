@@ -0,0 +1,208 @@
+package spamfilter;
+
+import java.util.Arrays;
+
+// TermIndex that keeps no terms at all. every term is hashed into one of a fixed number of buckets and each
+// bucket in use is given an id, so distinct terms hashing to the same bucket share an id and the memory used by
+// the index and the vocabulary arrays indexed by its ids is bounded by the bucket count however many distinct
+// terms are added. only terms that can be vocabulary words (lowercase letters and hyphens, between
+// MIN_WORD_LENGTH and MAX_WORD_LENGTH characters) are ever found, so that other tokens do not collide with them.
+// the term of an id is "#" followed by its bucket
+public class HashedTermIndex implements TermIndex
+{
+	private final int bucketCount;
+	private final int[] bucketIds;		// id + 1 of every bucket in use, 0 for a bucket not in use
+	private int[] idBuckets;			// bucket of every id
+	private int size;
+
+	public HashedTermIndex(int bucketCount)
+	{
+		this(bucketCount, 16);
+	}
+
+	public HashedTermIndex(int bucketCount, int expectedSize)
+	{
+		if (bucketCount < 1)
+		{
+			throw new IllegalArgumentException("bucketCount must be at least 1: " + bucketCount);
+		}
+		this.bucketCount = bucketCount;
+		this.bucketIds   = new int[bucketCount];
+		this.idBuckets   = new int[Math.max(1, Math.min(expectedSize, bucketCount))];
+		this.size        = 0;
+	}
+
+	// an index of the specified buckets, the bucket of every id being at that id, which BinaryModelFormat reads back
+	// from a model file. the array is not copied
+	HashedTermIndex(int bucketCount, int[] idBuckets, int size)
+	{
+		this(bucketCount, 1);
+		this.idBuckets = idBuckets;
+		for (int id = 0; id < size; ++id)
+		{
+			if (idBuckets[id] < 0 || idBuckets[id] >= bucketCount || bucketIds[idBuckets[id]] != 0)
+			{
+				throw new IllegalArgumentException("Bucket out of range or repeated: " + idBuckets[id]);
+			}
+			bucketIds[idBuckets[id]] = id + 1;
+		}
+		this.size = size;
+	}
+
+	public int getBucketCount()
+	{
+		return bucketCount;
+	}
+
+	public int getBucket(int id)
+	{
+		return idBuckets[id];
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public int find(char[] characters, int offset, int length)
+	{
+		if (length < SpamChecker.MIN_WORD_LENGTH || length > SpamChecker.MAX_WORD_LENGTH)
+		{
+			return -1;
+		}
+		int hash = 0x811C9DC5;
+		for (int i = offset; i < offset + length; ++i)
+		{
+			char character = characters[i];
+			if ((character < 'a' || character > 'z') && character != '-')
+			{
+				return -1;
+			}
+			hash = (hash ^ character) * 0x01000193;
+		}
+		return bucketIds[bucket(hash)] - 1;
+	}
+
+	@Override
+	public int find(CharSequence term)
+	{
+		int length = term.length();
+		if (length < SpamChecker.MIN_WORD_LENGTH || length > SpamChecker.MAX_WORD_LENGTH)
+		{
+			return -1;
+		}
+		int hash = 0x811C9DC5;
+		for (int i = 0; i < length; ++i)
+		{
+			char character = term.charAt(i);
+			if ((character < 'a' || character > 'z') && character != '-')
+			{
+				return -1;
+			}
+			hash = (hash ^ character) * 0x01000193;
+		}
+		return bucketIds[bucket(hash)] - 1;
+	}
+
+	// only called with acceptable words, which find never rejects
+	@Override
+	public int add(char[] characters, int offset, int length)
+	{
+		int hash = 0x811C9DC5;
+		for (int i = offset; i < offset + length; ++i)
+		{
+			hash = (hash ^ characters[i]) * 0x01000193;
+		}
+		return addBucket(bucket(hash));
+	}
+
+	@Override
+	public int add(String term)
+	{
+		if (!term.startsWith("#"))
+		{
+			throw new IllegalArgumentException("Not the term of a hashed index: " + term);
+		}
+		int bucket = Integer.parseInt(term.substring(1));
+		if (bucket < 0 || bucket >= bucketCount)
+		{
+			throw new IllegalArgumentException("Bucket out of range: " + term);
+		}
+		return addBucket(bucket);
+	}
+
+	@Override
+	public int find(TermIndex other, int otherId)
+	{
+		return bucketIds[((HashedTermIndex)other).idBuckets[otherId]] - 1;
+	}
+
+	@Override
+	public int add(TermIndex other, int otherId)
+	{
+		return addBucket(((HashedTermIndex)other).idBuckets[otherId]);
+	}
+
+	@Override
+	public String getTerm(int id)
+	{
+		return "#" + idBuckets[id];
+	}
+
+	// the shortest term a bucket can hold
+	@Override
+	public int getTermLength(int id)
+	{
+		return SpamChecker.MIN_WORD_LENGTH;
+	}
+
+	// returns every id sorted by bucket
+	@Override
+	public int[] getSortedIds()
+	{
+		int[] returnIds = new int[size];
+		int i = 0;
+		for (int bucket = 0; bucket < bucketCount; ++bucket)
+		{
+			if (bucketIds[bucket] != 0)
+			{
+				returnIds[i++] = bucketIds[bucket] - 1;
+			}
+		}
+		return returnIds;
+	}
+
+	@Override
+	public TermIndex newIndex(int expectedSize)
+	{
+		return new HashedTermIndex(bucketCount, expectedSize);
+	}
+
+	private int addBucket(int bucket)
+	{
+		if (bucketIds[bucket] == 0)
+		{
+			if (size == idBuckets.length)
+			{
+				idBuckets = Arrays.copyOf(idBuckets, Math.min(bucketCount, size * 2));
+			}
+			idBuckets[size]   = bucket;
+			bucketIds[bucket] = ++size;
+		}
+		return bucketIds[bucket] - 1;
+	}
+
+	// FNV-1a hash of the term finished with the murmur3 mixer, mapped onto the buckets by a multiplication
+	// rather than a division
+	private int bucket(int hash)
+	{
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+		return (int)(((hash & 0xFFFFFFFFL) * bucketCount) >>> 32);
+	}
+}
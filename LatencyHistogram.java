@@ -0,0 +1,123 @@
+package spamfilter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// lock-free histogram of durations in nanoseconds. every power of two is split into SUB_BUCKETS buckets, so a
+// percentile is reported with an error of at most 1 / SUB_BUCKETS of its value whatever its magnitude, using a
+// fixed amount of memory. safe to record into from any number of threads
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private final AtomicLongArray buckets;
+	private final LongAdder count;
+	private final LongAdder totalNanos;
+	private final AtomicLong maxNanos;
+
+	public LatencyHistogram()
+	{
+		this.buckets    = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+		this.count      = new LongAdder();
+		this.totalNanos = new LongAdder();
+		this.maxNanos   = new AtomicLong();
+	}
+
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+		buckets.incrementAndGet(bucketIndex(nanos));
+		count.increment();
+		totalNanos.add(nanos);
+		if (nanos > maxNanos.get())
+		{
+			maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public long getTotalNanos()
+	{
+		return totalNanos.sum();
+	}
+
+	public long getMaxNanos()
+	{
+		return maxNanos.get();
+	}
+
+	public double getMeanNanos()
+	{
+		long currentCount = count.sum();
+		return (currentCount == 0) ? 0 : (double)totalNanos.sum() / currentCount;
+	}
+
+	// returns the upper bound of the bucket holding the specified percentile, between 0 and 100, or 0 if nothing
+	// was recorded. the buckets are read one at a time, so the result is approximate while durations are recorded
+	public long getPercentileNanos(double percentile)
+	{
+		long total = 0;
+		for (int i = 0; i < buckets.length(); ++i)
+		{
+			total += buckets.get(i);
+		}
+		if (total == 0)
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < buckets.length(); ++i)
+		{
+			seen += buckets.get(i);
+			if (seen >= rank)
+			{
+				return Math.min(bucketUpperBound(i), maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	public void reset()
+	{
+		for (int i = 0; i < buckets.length(); ++i)
+		{
+			buckets.set(i, 0);
+		}
+		count.reset();
+		totalNanos.reset();
+		maxNanos.set(0);
+	}
+
+	// values below SUB_BUCKETS get a bucket each, every larger power of two is split by its next SUB_BUCKET_BITS
+	// bits
+	private static int bucketIndex(long nanos)
+	{
+		if (nanos < SUB_BUCKETS)
+		{
+			return (int)nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int shift    = exponent - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int)((nanos >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	private static long bucketUpperBound(int index)
+	{
+		if (index < SUB_BUCKETS)
+		{
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long base = ((long)(SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+		return base + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,82 @@
+package spamfilter;
+
+import spamfilter.ClassifiedDocument.ScoringOutcome;
+
+// DocumentScorer that stops the tokenizer feeding it when a budget of ScoringLimits is spent or once the verdict
+// is decided. the verdict is decided when the gap between the ham and spam scores is larger than the most the
+// rest of the document could move it: every remaining word found in the vocabulary moves it by at most the
+// largest difference between the ham and spam log probabilities of a vocabulary word, plus that of a bigram if
+// the model has bigrams, and the remaining words are at most the remaining characters over the shortest
+// vocabulary word plus a separating whitespace. the scores of a document stopped early only cover the tokens
+// scored before it stopped
+public class LimitedDocumentScorer extends DocumentScorer
+{
+	private static final int CHECK_INTERVAL = 64;		// tokens between looking at the clock and the verdict
+	private final DocumentTokenizer tokenizer;
+	private final ScoringLimits limits;
+	private final double maxLogRatio;
+	private final int minWordLength;
+	private final long documentLength;					// at least the characters of the document, -1 if unknown
+	private final long startTime;
+	private ScoringOutcome outcome;
+
+	// the document length is an upper bound on its number of characters, or -1 if unknown, in which case the
+	// verdict is never considered decided
+	public LimitedDocumentScorer(ModelSnapshot model, ScoringLimits limits, DocumentTokenizer tokenizer,
+			long documentLength)
+	{
+		super(model);
+		this.tokenizer      = tokenizer;
+		this.limits         = limits;
+		this.maxLogRatio    = model.getMaxLogRatio();
+		this.minWordLength  = model.getMinWordLength();
+		this.documentLength = documentLength;
+		this.startTime      = (limits.getMaxNanos() != 0) ? System.nanoTime() : 0;
+		this.outcome        = ScoringOutcome.COMPLETE;
+	}
+
+	@Override
+	public ScoringOutcome getOutcome()
+	{
+		return outcome;
+	}
+
+	@Override
+	public void acceptToken(char[] characters, int offset, int length)
+	{
+		super.acceptToken(characters, offset, length);
+		int tokenCount = getTokenCount();
+		if (tokenCount == limits.getMaxTokens())
+		{
+			stop(ScoringOutcome.TOKEN_BUDGET);
+		}
+		else if (tokenCount % CHECK_INTERVAL == 0)
+		{
+			if (limits.getMaxNanos() != 0 && System.nanoTime() - startTime >= limits.getMaxNanos())
+			{
+				stop(ScoringOutcome.TIME_BUDGET);
+			}
+			else if (limits.isStopWhenDecided() && isDecided())
+			{
+				stop(ScoringOutcome.DECIDED);
+			}
+		}
+	}
+
+	private boolean isDecided()
+	{
+		if (documentLength < 0)
+		{
+			return false;
+		}
+		long remainingCharacters = Math.max(0, documentLength - tokenizer.getCharactersDone());
+		long remainingWords      = (remainingCharacters + 1) / (minWordLength + 1);
+		return Math.abs(getHamScore() - getSpamScore()) > remainingWords * maxLogRatio;
+	}
+
+	private void stop(ScoringOutcome outcome)
+	{
+		this.outcome = outcome;
+		tokenizer.stop();
+	}
+}
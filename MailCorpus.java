@@ -0,0 +1,299 @@
+package spamfilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// the messages of a dataset, which is one of:
+//
+//   a folder holding one document per file, the format of the original datasets
+//   an mbox file, every message starting with a "From " line
+//   a Maildir, a folder with "cur" and "new" subfolders holding one message per file, or a tree of Maildirs
+//
+// an mbox file is memory-mapped a window of at most WINDOW_SIZE bytes at a time and split into messages in place,
+// each message being a view of the mapped bytes from the line after its "From " line to the next one, named by
+// the path of the mbox file followed by "#" and its index. a Maildir is walked recursively, skipping the "tmp"
+// folders of messages still being delivered, and its messages are only read when their contents are asked for,
+// like the files of a folder. messages are never written to files of their own
+public class MailCorpus
+{
+	public enum Format { FOLDER, MBOX, MAILDIR }
+
+	private static final long WINDOW_SIZE = 1L << 30;
+	private static final byte[] FROM_LINE = { 'F', 'r', 'o', 'm', ' ' };
+	private Path path;
+	private Format format;
+
+	public MailCorpus(Path path, Format format)
+	{
+		this.path   = path;
+		this.format = format;
+	}
+
+	// the corpus at the specified path, in the format it appears to be in: a regular file is an mbox file, a folder
+	// with a "cur" or "new" subfolder or with subfolders only is a Maildir and any other folder holds a document per
+	// file
+	public static MailCorpus open(String path)
+	{
+		Path corpusPath = Paths.get(path);
+		if (Files.isRegularFile(corpusPath))
+		{
+			return new MailCorpus(corpusPath, Format.MBOX);
+		}
+		File[] files = corpusPath.toFile().listFiles();
+		if (files == null || files.length == 0)
+		{
+			return new MailCorpus(corpusPath, Format.FOLDER);
+		}
+		boolean subfoldersOnly = true;
+		for (File currentFile : files)
+		{
+			if (currentFile.isDirectory() && isMaildirFolder(currentFile.getName()))
+			{
+				return new MailCorpus(corpusPath, Format.MAILDIR);
+			}
+			subfoldersOnly &= currentFile.isDirectory();
+		}
+		return new MailCorpus(corpusPath, subfoldersOnly ? Format.MAILDIR : Format.FOLDER);
+	}
+
+	public Path getPath()
+	{
+		return path;
+	}
+
+	public Format getFormat()
+	{
+		return format;
+	}
+
+	// the messages of the corpus, found as the stream is consumed. the stream of a Maildir holds its open folders
+	// and should be closed. an error reading the corpus is thrown as an UncheckedIOException
+	public Stream<MailMessage> messages()
+	{
+		if (format == Format.MAILDIR)
+		{
+			try
+			{
+				return Files.walk(path).filter(this::isMessage).map(MailMessage::new);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+		Iterator<MailMessage> iterator = (format == Format.MBOX) ? new MboxIterator(path) : new FolderIterator(path);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED
+																				| Spliterator.NONNULL), false);
+	}
+
+	// every message of the corpus, in the order of messages
+	public MailMessage[] list()
+	{
+		Stream<MailMessage> messages = messages();
+		try
+		{
+			return messages.toArray(MailMessage[]::new);
+		}
+		finally
+		{
+			messages.close();
+		}
+	}
+
+	private static boolean isMaildirFolder(String name)
+	{
+		return name.equals("cur") || name.equals("new");
+	}
+
+	// whether the specified file of a Maildir is a message, which is a regular file of a "cur" or "new" folder
+	private boolean isMessage(Path file)
+	{
+		Path folder = file.getParent();
+		return Files.isRegularFile(file) && folder != null && !file.equals(path)
+				&& isMaildirFolder(folder.getFileName().toString());
+	}
+
+	// the files of a folder, in the order File.listFiles returns them like the original datasets were read
+	private static class FolderIterator implements Iterator<MailMessage>
+	{
+		private File[] files;
+		private int next;
+
+		public FolderIterator(Path folder)
+		{
+			this.files = folder.toFile().listFiles();
+			this.next  = 0;
+			if (files == null)
+			{
+				throw new UncheckedIOException(new IOException(folder + " is not a readable folder"));
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < files.length;
+		}
+
+		@Override
+		public MailMessage next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			return new MailMessage(files[next++].toPath());
+		}
+	}
+
+	// splits an mbox file into messages on the lines starting with "From ". the file is mapped a window at a time,
+	// the next window starting at the first message not entirely inside the current one, and a window is grown
+	// until it holds at least one whole message
+	private static class MboxIterator implements Iterator<MailMessage>
+	{
+		private Path file;
+		private String name;
+		private long fileSize;
+		private ByteBuffer window;
+		private long windowStart;			// file position of the start of window
+		private int position;				// of the next message in window
+		private int index;					// of the next message in the file
+
+		public MboxIterator(Path file)
+		{
+			this.file  = file;
+			this.name  = file.toAbsolutePath().toString();
+			this.index = 0;
+			try
+			{
+				this.fileSize = Files.size(file);
+				map(0, Math.min(fileSize, WINDOW_SIZE));
+				// blank lines before the first message
+				while (position < window.limit() && (window.get(position) == '\n' || window.get(position) == '\r'))
+				{
+					++position;
+				}
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return windowStart + position < fileSize;
+		}
+
+		@Override
+		public MailMessage next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			try
+			{
+				int end;
+				while ((end = findMessageEnd()) < 0)
+				{
+					long messageStart = windowStart + position;
+					map(messageStart, Math.min(fileSize - messageStart,
+												Math.max(WINDOW_SIZE, 2L * (window.limit() - position))));
+				}
+				int start = skipFromLine(position, end);
+				ByteBuffer contents = window.duplicate();
+				contents.limit(end).position(start);
+				position = end;
+				return new MailMessage(name + "#" + index++, contents);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		// the position in window of the end of the message at position, which is the start of the next "From " line
+		// or the end of the file, or -1 if the message goes on past the end of window
+		private int findMessageEnd() throws IOException
+		{
+			int limit = window.limit();
+			for (int i = position + 1; i + FROM_LINE.length <= limit; ++i)
+			{
+				if (window.get(i - 1) == '\n' && isFromLine(i))
+				{
+					return i;
+				}
+			}
+			if (windowStart + limit == fileSize)
+			{
+				return limit;
+			}
+			if (limit - position >= Integer.MAX_VALUE - FROM_LINE.length)
+			{
+				throw new IOException("Message " + index + " of " + name + " is larger than 2 GB");
+			}
+			return -1;
+		}
+
+		// the start of the contents of the message from start to end, after its "From " line if it has one. only
+		// text before the first "From " line of a file that does not start with one has no such line
+		private int skipFromLine(int start, int end)
+		{
+			if (start + FROM_LINE.length > end || !isFromLine(start))
+			{
+				return start;
+			}
+			for (int i = start; i < end; ++i)
+			{
+				if (window.get(i) == '\n')
+				{
+					return i + 1;
+				}
+			}
+			return end;
+		}
+
+		private boolean isFromLine(int start)
+		{
+			for (int i = 0; i < FROM_LINE.length; ++i)
+			{
+				if (window.get(start + i) != FROM_LINE[i])
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// the mapping stays valid once the channel is closed
+		private void map(long start, long size) throws IOException
+		{
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+			try
+			{
+				window      = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, Integer.MAX_VALUE));
+				windowStart = start;
+				position    = 0;
+			}
+			finally
+			{
+				channel.close();
+			}
+		}
+	}
+}
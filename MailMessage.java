@@ -0,0 +1,58 @@
+package spamfilter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// a message of a MailCorpus. a message in its own file is only read when its contents are asked for, while a
+// message inside a mailbox file is a read-only view of the mapped file, so it is never copied
+public class MailMessage
+{
+	private final String name;
+	private final Path path;				// null for a message inside a mailbox file
+	private final ByteBuffer contents;		// null for a message in its own file
+
+	// a message in its own file, named by its absolute path
+	public MailMessage(Path path)
+	{
+		this.name     = path.toAbsolutePath().toString();
+		this.path     = path;
+		this.contents = null;
+	}
+
+	// a message whose bytes are the remaining ones of the specified buffer
+	public MailMessage(String name, ByteBuffer contents)
+	{
+		this.name     = name;
+		this.path     = null;
+		this.contents = contents.slice().asReadOnlyBuffer();
+	}
+
+	// identifies the message among those of its corpus, like the path of a document
+	public String getName()
+	{
+		return name;
+	}
+
+	// the file of a message in its own file, or null
+	public Path getPath()
+	{
+		return path;
+	}
+
+	// returns the bytes of the message, reading them from its file if it has one
+	public ByteBuffer getContents() throws IOException
+	{
+		if (contents == null)
+		{
+			return ByteBuffer.wrap(Files.readAllBytes(path));
+		}
+		return contents.duplicate();
+	}
+
+	public String toString()
+	{
+		return name;
+	}
+}
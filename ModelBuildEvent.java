@@ -0,0 +1,22 @@
+package spamfilter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JDK Flight Recorder event covering the creation of a model snapshot from the training counts
+@Name("spamfilter.ModelBuild")
+@Label("Model Build")
+@Category("Spam Filter")
+@Description("Pruning the vocabulary and computing the probabilities of a new model")
+public class ModelBuildEvent extends Event
+{
+	@Label("Distinct Words")
+	int distinctWords;
+
+	@Label("Vocabulary Size")
+	@Description("Words left once the rare words are left out")
+	int vocabularySize;
+}
@@ -0,0 +1,24 @@
+package spamfilter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JDK Flight Recorder event covering the loading of a text or binary model file
+@Name("spamfilter.ModelLoad")
+@Label("Model Load")
+@Category("Spam Filter")
+@Description("Reading a model file")
+public class ModelLoadEvent extends Event
+{
+	@Label("Model Path")
+	String modelPath;
+
+	@Label("Binary")
+	boolean binary;
+
+	@Label("Vocabulary Size")
+	int vocabularySize;
+}
@@ -0,0 +1,106 @@
+package spamfilter;
+
+// immutable state of a SpamChecker model that documents are classified against. whenever the model is retrained,
+// reloaded or has updates published, a new snapshot is built and swapped in, so every classification runs against
+// the one snapshot it started with. the vocabulary of a snapshot is never modified once the snapshot is created
+public class ModelSnapshot
+{
+	private final String hamDatasetPath;
+	private final String spamDatasetPath;
+	private final double hamProbability;
+	private final double spamProbability;
+	private final int hamWordCount;
+	private final int spamWordCount;
+	private final Vocabulary vocabulary;
+	private final BigramTable bigrams;		// keyed by the ids of vocabulary, null for a model without bigrams
+	private final double maxLogRatio;		// largest gap a word and its bigram with the previous word can make
+	private final int minWordLength;
+
+	public ModelSnapshot(String hamDatasetPath, String spamDatasetPath, double hamProbability, double spamProbability,
+			int hamWordCount, int spamWordCount, Vocabulary vocabulary)
+	{
+		this(hamDatasetPath, spamDatasetPath, hamProbability, spamProbability, hamWordCount, spamWordCount, vocabulary,
+				null);
+	}
+
+	// same as the constructor above for a model also scoring the specified bigrams of its words, see BigramTable
+	public ModelSnapshot(String hamDatasetPath, String spamDatasetPath, double hamProbability, double spamProbability,
+			int hamWordCount, int spamWordCount, Vocabulary vocabulary, BigramTable bigrams)
+	{
+		this.hamDatasetPath  = hamDatasetPath;
+		this.spamDatasetPath = spamDatasetPath;
+		this.hamProbability  = hamProbability;
+		this.spamProbability = spamProbability;
+		this.hamWordCount    = hamWordCount;
+		this.spamWordCount   = spamWordCount;
+		this.vocabulary      = vocabulary;
+		this.bigrams         = bigrams;
+		double maxLogRatio   = 0;
+		int minWordLength    = Integer.MAX_VALUE;
+		for (int id = 0; id < vocabulary.size(); ++id)
+		{
+			maxLogRatio   = Math.max(maxLogRatio, Math.abs(vocabulary.getHamLogProbability(id) - vocabulary.getSpamLogProbability(id)));
+			minWordLength = Math.min(minWordLength, vocabulary.getWords().getTermLength(id));
+		}
+		double maxBigramLogRatio = 0;
+		for (int index = 0; bigrams != null && index < bigrams.size(); ++index)
+		{
+			maxBigramLogRatio = Math.max(maxBigramLogRatio, Math.abs(bigrams.getHamLogProbability(index)
+																		- bigrams.getSpamLogProbability(index)));
+		}
+		this.maxLogRatio     = maxLogRatio + maxBigramLogRatio;
+		this.minWordLength   = (vocabulary.size() == 0) ? 0 : minWordLength;
+	}
+
+	public String getHamDatasetPath()
+	{
+		return hamDatasetPath;
+	}
+
+	public String getSpamDatasetPath()
+	{
+		return spamDatasetPath;
+	}
+
+	public double getHamProbability()
+	{
+		return hamProbability;
+	}
+
+	public double getSpamProbability()
+	{
+		return spamProbability;
+	}
+
+	public int getHamWordCount()
+	{
+		return hamWordCount;
+	}
+
+	public int getSpamWordCount()
+	{
+		return spamWordCount;
+	}
+
+	public Vocabulary getVocabulary()
+	{
+		return vocabulary;
+	}
+
+	// the bigrams scored along with the words, or null if only words are
+	public BigramTable getBigrams()
+	{
+		return bigrams;
+	}
+
+	// the most a single word of a document can change the difference between its ham and spam scores
+	public double getMaxLogRatio()
+	{
+		return maxLogRatio;
+	}
+
+	public int getMinWordLength()
+	{
+		return minWordLength;
+	}
+}
@@ -0,0 +1,249 @@
+package spamfilter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+// raw training counts of a shard of the training documents: the ham and spam frequency of every word counted,
+// rare ones included, the number of ham and spam documents and the total ham and spam word counts. counts of
+// shards trained separately merge into the counts of all their documents in any order, and only the model built
+// from the merged counts leaves out the rare words and smooths the probabilities, so it is the model training on
+// every document at once would build. counts are written to and read from a text file:
+//
+//     SPAMFILTER-COUNTS <version> <hash buckets> <ham documents> <spam documents> <ham words> <spam words> <words>
+//     <ham dataset paths> <spam dataset paths>
+//     <word> <ham frequency> <spam frequency>
+//     ...
+//
+// with the fields of a line separated by tabs and the words sorted. bigrams are not part of counts files, and the
+// bigrams of counts merged into counts of no document are left out
+public class PartialCounts
+{
+	private static final String HEADER = "SPAMFILTER-COUNTS";
+	private static final int VERSION = 1;
+	private static final String DATASET_PATH_SEPARATOR = ";";
+	private String hamDatasetPath;				// the dataset paths of every shard, separated by ";"
+	private String spamDatasetPath;
+	private WordCounts counts;
+	private int hamDocuments;
+	private int spamDocuments;
+
+	// counts of no document, which the counts of any shard with the same number of hash buckets can be merged into
+	public PartialCounts(int hashBuckets)
+	{
+		this("", "", new WordCounts(hashBuckets), 0, 0);
+	}
+
+	// takes ownership of the specified counts
+	PartialCounts(String hamDatasetPath, String spamDatasetPath, WordCounts counts, int hamDocuments, int spamDocuments)
+	{
+		this.hamDatasetPath  = hamDatasetPath;
+		this.spamDatasetPath = spamDatasetPath;
+		this.counts          = counts;
+		this.hamDocuments    = hamDocuments;
+		this.spamDocuments   = spamDocuments;
+	}
+
+	// commands to produce, merge and build models from counts files in separate processes:
+	//
+	//     count <ham folder> <spam folder> <stop words file> <counts file> [parallelism] [hash buckets]
+	//     merge <merged counts file> <counts file>...
+	//     model <model file> <counts file>...
+	//
+	// model writes a binary model if the model file name ends in ".bin" and a text model otherwise
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length >= 5 && args[0].equals("count"))
+		{
+			int parallelism = (args.length > 5) ? Integer.parseInt(args[5]) : 1;
+			int hashBuckets = (args.length > 6) ? Integer.parseInt(args[6]) : 0;
+			new SpamChecker(args[1], args[2], args[3], parallelism, hashBuckets).getPartialCounts().write(args[4]);
+		}
+		else if (args.length >= 3 && args[0].equals("merge"))
+		{
+			readAll(args).write(args[1]);
+		}
+		else if (args.length >= 3 && args[0].equals("model"))
+		{
+			SpamChecker checker = new SpamChecker(readAll(args));
+			if (args[1].endsWith(".bin"))
+			{
+				checker.exportModelToBinaryFile(args[1]);
+			}
+			else
+			{
+				checker.exportModelToTextFile(args[1]);
+			}
+		}
+		else
+		{
+			System.out.println("Usage: PartialCounts count <ham folder> <spam folder> <stop words file> <counts file> "
+								+ "[parallelism] [hash buckets]");
+			System.out.println("       PartialCounts merge <merged counts file> <counts file>...");
+			System.out.println("       PartialCounts model <model file> <counts file>...");
+		}
+	}
+
+	public String getHamDatasetPath()
+	{
+		return hamDatasetPath;
+	}
+
+	public String getSpamDatasetPath()
+	{
+		return spamDatasetPath;
+	}
+
+	public int getHashBuckets()
+	{
+		return counts.getWords().getHashBuckets();
+	}
+
+	public int getHamDocuments()
+	{
+		return hamDocuments;
+	}
+
+	public int getSpamDocuments()
+	{
+		return spamDocuments;
+	}
+
+	public int getHamWordCount()
+	{
+		return counts.getHamWordCount();
+	}
+
+	public int getSpamWordCount()
+	{
+		return counts.getSpamWordCount();
+	}
+
+	// number of distinct words counted, rare ones included
+	public int size()
+	{
+		return counts.getWords().size();
+	}
+
+	// adds the counts of the specified shard to these ones. merging is associative and commutative
+	public void merge(PartialCounts other)
+	{
+		if (other.getHashBuckets() != getHashBuckets())
+		{
+			throw new IllegalArgumentException("Cannot merge counts hashed into " + other.getHashBuckets()
+												+ " buckets into counts hashed into " + getHashBuckets());
+		}
+		counts.merge(other.counts);
+		hamDocuments   += other.hamDocuments;
+		spamDocuments  += other.spamDocuments;
+		hamDatasetPath  = joinPaths(hamDatasetPath, other.hamDatasetPath);
+		spamDatasetPath = joinPaths(spamDatasetPath, other.spamDatasetPath);
+	}
+
+	// builds the model of the counts, leaving out the rare words and smoothing the probabilities over the rest
+	public ModelSnapshot createModel()
+	{
+		return SpamChecker.createSnapshot(counts, hamDocuments, spamDocuments, hamDatasetPath, spamDatasetPath, null);
+	}
+
+	public void write(String countsPath) throws IOException
+	{
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(countsPath),
+																			StandardCharsets.UTF_8));
+		try
+		{
+			Vocabulary words = counts.getWords();
+			writer.write(HEADER + "\t" + VERSION + "\t" + getHashBuckets() + "\t" + hamDocuments + "\t" + spamDocuments
+							+ "\t" + counts.getHamWordCount() + "\t" + counts.getSpamWordCount() + "\t" + words.size());
+			writer.newLine();
+			writer.write(hamDatasetPath + "\t" + spamDatasetPath);
+			writer.newLine();
+			for (int id : words.getSortedIds())
+			{
+				writer.write(words.getWord(id) + "\t" + words.getHamFrequency(id) + "\t" + words.getSpamFrequency(id));
+				writer.newLine();
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	// reads a counts file, checking its word count and totals against the words it holds
+	public static PartialCounts read(String countsPath) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(countsPath),
+																			StandardCharsets.UTF_8));
+		try
+		{
+			String[] header = readFields(reader, countsPath);
+			if (header.length != 8 || !header[0].equals(HEADER))
+			{
+				throw new IOException(countsPath + " is not a counts file");
+			}
+			if (Integer.parseInt(header[1]) != VERSION)
+			{
+				throw new IOException(countsPath + " has unsupported counts version " + header[1]);
+			}
+			String[] datasetPaths = readFields(reader, countsPath);
+			WordCounts counts     = new WordCounts(Integer.parseInt(header[2]));
+			int words             = Integer.parseInt(header[7]);
+			for (int i = 0; i < words; ++i)
+			{
+				String[] wordLine = readFields(reader, countsPath);
+				counts.addWord(wordLine[0], Integer.parseInt(wordLine[1]), Integer.parseInt(wordLine[2]));
+			}
+			if (counts.getWords().size() != words || counts.getHamWordCount() != Long.parseLong(header[5])
+					|| counts.getSpamWordCount() != Long.parseLong(header[6]) || reader.readLine() != null)
+			{
+				throw new IOException(countsPath + " does not add up to its totals");
+			}
+			return new PartialCounts(datasetPaths[0], (datasetPaths.length > 1) ? datasetPaths[1] : "", counts,
+										Integer.parseInt(header[3]), Integer.parseInt(header[4]));
+		}
+		catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+		{
+			throw new IOException(countsPath + " is corrupt", e);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	// reads and merges the counts files named from the third argument on
+	private static PartialCounts readAll(String[] args) throws IOException
+	{
+		PartialCounts merged = read(args[2]);
+		for (int i = 3; i < args.length; ++i)
+		{
+			merged.merge(read(args[i]));
+		}
+		return merged;
+	}
+
+	private static String[] readFields(BufferedReader reader, String countsPath) throws IOException
+	{
+		String line = reader.readLine();
+		if (line == null)
+		{
+			throw new IOException(countsPath + " is truncated");
+		}
+		return line.split("\t", -1);
+	}
+
+	private static String joinPaths(String paths, String otherPaths)
+	{
+		if (paths.isEmpty())
+		{
+			return otherPaths;
+		}
+		return otherPaths.isEmpty() ? paths : paths + DATASET_PATH_SEPARATOR + otherPaths;
+	}
+}
@@ -0,0 +1,47 @@
+package spamfilter;
+
+import java.util.concurrent.TimeUnit;
+
+// optional limits on scoring a document, trading exactness for latency on long documents. scoring can stop once
+// the rest of the document can no longer change the verdict, after a number of tokens or after a length of time.
+// a document scored under limits reports whether it stopped early, see ClassifiedDocument.getScoringOutcome
+public class ScoringLimits
+{
+	public static final ScoringLimits NONE = new ScoringLimits(false, 0, 0, TimeUnit.NANOSECONDS);
+	private final boolean stopWhenDecided;
+	private final int maxTokens;				// 0 for no limit
+	private final long maxNanos;				// 0 for no limit
+
+	// a maxTokens or maxTime of 0 leaves that budget unlimited
+	public ScoringLimits(boolean stopWhenDecided, int maxTokens, long maxTime, TimeUnit timeUnit)
+	{
+		if (maxTokens < 0 || maxTime < 0)
+		{
+			throw new IllegalArgumentException("Scoring budgets cannot be negative: " + maxTokens + " tokens, "
+												+ maxTime + " " + timeUnit);
+		}
+		this.stopWhenDecided = stopWhenDecided;
+		this.maxTokens       = maxTokens;
+		this.maxNanos        = timeUnit.toNanos(maxTime);
+	}
+
+	public boolean isStopWhenDecided()
+	{
+		return stopWhenDecided;
+	}
+
+	public int getMaxTokens()
+	{
+		return maxTokens;
+	}
+
+	public long getMaxNanos()
+	{
+		return maxNanos;
+	}
+
+	public boolean isUnlimited()
+	{
+		return !stopWhenDecided && maxTokens == 0 && maxNanos == 0;
+	}
+}
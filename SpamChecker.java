@@ -4,64 +4,134 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashSet;
-import java.util.Map.Entry;
-import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import spamfilter.FilteredDocument.DocumentType;
 
 public class SpamChecker
 {
-	private static final int MIN_WORD_LENGTH = 4;
-	private static final int MAX_WORD_LENGTH = 28;			// 28 is the size of the longest non-coined and nontechnical word
+	static final int MIN_WORD_LENGTH = 4;
+	static final int MAX_WORD_LENGTH = 28;			// 28 is the size of the longest non-coined and nontechnical word
 	private static final double SMOOTHING_FACTOR = 0.5;
-	private String hamDatasetPath;
-	private String spamDatasetPath;
-	private String stopWordsPath;
-	private HashSet<FilteredDocument> hamDocuments;
-	private HashSet<FilteredDocument> spamDocuments;
-	private int hamWordCount;
-	private int spamWordCount;
-	private double hamProbability;
-	private double spamProbability;
-	private HashSet<String> stopWords;
-	private HashMap<String, QuantifiedWord> vocabulary;
+	static final int MIN_WORD_FREQUENCY = 2;			// words appearing fewer times in both classes are left out
+	private final String stopWordsPath;
+	private final int hashBuckets;						// 0 unless the words are hashed, see HashedTermIndex
+	private final boolean bigrams;						// whether bigrams of words are counted and scored
+	// the model documents are classified against. it is replaced as a whole, never modified, so classifications
+	// never take a lock
+	private final AtomicReference<ModelSnapshot> model;
+	private volatile ClassificationCache cache;			// null unless set, see setClassificationCache
+	// training state, only accessed while holding the lock of this object. counts is null for a model loaded from
+	// a file. only the names of the training documents are kept, see MailMessage, their contents are counted as
+	// they are read
+	private HashSet<String> hamDocuments;
+	private HashSet<String> spamDocuments;
+	private TermDictionary stopWords;
+	private WordCounts counts;
+	private boolean countsChanged;						// the counts changed since the model was last published
+	private FeatureSelection featureSelection;			// null to keep every word that is not rare
 
 	// constructor that takes a path to a folder of known ham files and a path to a folder of known spam files and
-	// creates a vocabulary from all the words found
+	// creates a vocabulary from all the words found. either path can also be an mbox file or a Maildir, see
+	// MailCorpus.open
 	public SpamChecker(String hamDatasetPath, String spamDatasetPath, String stopWordsPath)
 	{
-		this.hamDatasetPath  = hamDatasetPath;
-		this.spamDatasetPath = spamDatasetPath;
-		this.stopWordsPath   = stopWordsPath;
-		this.hamDocuments    = filterDocuments(hamDatasetPath);
-		this.spamDocuments   = filterDocuments(spamDatasetPath);
-		this.hamProbability  = (double)hamDocuments.size() / (hamDocuments.size() + spamDocuments.size());
-		this.spamProbability = (double)spamDocuments.size() / (hamDocuments.size() + spamDocuments.size());
-		this.stopWords       = parseStopWords(stopWordsPath);
-		this.vocabulary      = this.createVocabulary();
-		computeConditionalProbabilities();
+		this(hamDatasetPath, spamDatasetPath, stopWordsPath, 1);
 	}
 
-	// constructor that takes the path to a text file of a SpamChecker model and initializes the attributes
+	// same as the constructor above but filters and counts the documents on the specified number of fork/join
+	// worker threads. a parallelism of 1 does all the work on the calling thread. the resulting model is identical
+	// for every parallelism, and so is a failure: a training document that cannot be read throws an
+	// UncheckedIOException rather than being left out of the model
+	public SpamChecker(String hamDatasetPath, String spamDatasetPath, String stopWordsPath, int parallelism)
+	{
+		this(hamDatasetPath, spamDatasetPath, stopWordsPath, parallelism, 0);
+	}
+
+	// same as the constructor above but, unless hashBuckets is 0, the words are hashed into that many buckets
+	// instead of being kept, see HashedTermIndex. the model then takes a fixed amount of memory however many
+	// distinct words the datasets hold, at the cost of words sharing a bucket being counted as one. it is
+	// trained, updated, classified against and exported like any other
+	public SpamChecker(String hamDatasetPath, String spamDatasetPath, String stopWordsPath, int parallelism,
+			int hashBuckets)
+	{
+		this(hamDatasetPath, spamDatasetPath, stopWordsPath, parallelism, hashBuckets, false);
+	}
+
+	// same as the constructor above but, if bigrams is set, the bigrams of words following each other in a
+	// document are counted as features of their own, see BigramTable. a bigram is left out of the model unless
+	// both of its words are in the vocabulary and it appears at least MIN_WORD_FREQUENCY times in ham or in spam,
+	// and the bigram probabilities are smoothed over the bigrams kept like the word probabilities are over the
+	// words. documents are then scored on their words and the bigrams of their words in the same pass
+	public SpamChecker(String hamDatasetPath, String spamDatasetPath, String stopWordsPath, int parallelism,
+			int hashBuckets, boolean bigrams)
+	{
+		if (parallelism < 1)
+		{
+			throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+		}
+		if (hashBuckets < 0)
+		{
+			throw new IllegalArgumentException("hashBuckets cannot be negative: " + hashBuckets);
+		}
+		this.stopWordsPath = stopWordsPath;
+		this.hashBuckets   = hashBuckets;
+		this.bigrams       = bigrams;
+		this.model         = new AtomicReference<ModelSnapshot>();
+		train(hamDatasetPath, spamDatasetPath, parallelism);
+	}
+
+	// constructor that takes the path to a text or binary file of a SpamChecker model and initializes the attributes
 	public SpamChecker(String modelPath)
 	{
-		parseModel(modelPath);
+		this.stopWordsPath = null;
+		this.hashBuckets   = 0;
+		this.bigrams       = false;
+		this.model         = new AtomicReference<ModelSnapshot>();
+		try
+		{
+			this.model.set(readModel(modelPath));
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			this.model.set(new ModelSnapshot(null, null, 0, 0, 0, 0, new Vocabulary()));
+		}
+	}
+
+	// constructor that builds the model of the specified merged partial counts. like a SpamChecker loaded from a
+	// model file, it has no training documents to update the model with
+	public SpamChecker(PartialCounts counts)
+	{
+		this.stopWordsPath = null;
+		this.hashBuckets   = 0;
+		this.bigrams       = false;
+		this.model         = new AtomicReference<ModelSnapshot>(counts.createModel());
 	}
 
 	public String getHamDatasetPath()
 	{
-		return hamDatasetPath;
+		return model.get().getHamDatasetPath();
 	}
 
 	public String getSpamDatasetPath()
 	{
-		return spamDatasetPath;
+		return model.get().getSpamDatasetPath();
 	}
 
 	public String getStopWordsPath()
@@ -71,27 +141,203 @@ public class SpamChecker
 
 	public int getHamWordCount()
 	{
-		return hamWordCount;
+		return model.get().getHamWordCount();
 	}
 
 	public int getSpamWordCount()
 	{
-		return spamWordCount;
+		return model.get().getSpamWordCount();
 	}
 
 	public double getHamProbability()
 	{
-		return hamProbability;
+		return model.get().getHamProbability();
 	}
 
 	public double getSpamProbability()
 	{
-		return spamProbability;
+		return model.get().getSpamProbability();
+	}
+
+	// the model documents are currently classified against
+	public ModelSnapshot getModel()
+	{
+		return model.get();
+	}
+
+	// retrains from the documents currently in the dataset folders of the model and publishes the new model once
+	// it is built. documents keep being classified against the previous model in the meantime, and keep it if a
+	// document cannot be read. only available on a SpamChecker created from datasets
+	public void retrain(int parallelism)
+	{
+		if (stopWordsPath == null)
+		{
+			throw new IllegalStateException("A SpamChecker loaded from a model file has no stop words to retrain with");
+		}
+		ModelSnapshot currentModel = model.get();
+		train(currentModel.getHamDatasetPath(), currentModel.getSpamDatasetPath(), parallelism);
+	}
+
+	// replaces the model with the one in the specified text or binary model file once it is loaded. documents keep
+	// being classified against the previous model in the meantime, and keep it if the file cannot be read. training
+	// counts are dropped, so the new model cannot be updated with addHam, addSpam, removeHam or removeSpam
+	public void reloadModel(String modelPath) throws IOException
+	{
+		ModelSnapshot newModel = readModel(modelPath);
+		synchronized (this)
+		{
+			this.hamDocuments     = null;
+			this.spamDocuments    = null;
+			this.stopWords        = null;
+			this.counts           = null;
+			this.countsChanged    = false;
+			this.featureSelection = null;
+			this.model.set(newModel);
+		}
+	}
+
+	// builds a model from the training counts changed by addHam, addSpam, removeHam and removeSpam since the model was
+	// last published and swaps it in. this is where the rare words are left out, so it costs a pass over all the
+	// counted words. documents keep being classified against the previous model until it returns
+	public synchronized void publishUpdates()
+	{
+		if (countsChanged)
+		{
+			model.set(createSnapshot(model.get().getHamDatasetPath(), model.get().getSpamDatasetPath(), featureSelection));
+			countsChanged = false;
+		}
+	}
+
+	// sets the feature selection applied, after leaving out the rare words, to every model built from now on and
+	// publishes a model built with it. null goes back to keeping every word that is not rare. only available on
+	// a SpamChecker created from datasets
+	public synchronized void setFeatureSelection(FeatureSelection featureSelection)
+	{
+		checkTrainingCounts();
+		this.featureSelection = featureSelection;
+		model.set(createSnapshot(model.get().getHamDatasetPath(), model.get().getSpamDatasetPath(), featureSelection));
+		countsChanged = false;
+	}
+
+	public synchronized FeatureSelection getFeatureSelection()
+	{
+		return featureSelection;
+	}
+
+	// returns a copy of the training counts, including updates that are not published yet, for merging with the
+	// counts of other shards of the training documents. only available on a SpamChecker created from datasets
+	public synchronized PartialCounts getPartialCounts()
+	{
+		checkTrainingCounts();
+		ModelSnapshot currentModel = model.get();
+		return new PartialCounts(currentModel.getHamDatasetPath(), currentModel.getSpamDatasetPath(), counts.copy(),
+									hamDocuments.size(), spamDocuments.size());
+	}
+
+	// classifies every message of the specified held-out ham and spam datasets, folders, mbox files or Maildirs
+	// (see MailCorpus), against the current model and against the model the specified feature selection would
+	// build from the current training counts, without publishing it, and reports how much smaller and how much
+	// more or less accurate it would be
+	public FeatureSelectionReport evaluateFeatureSelection(FeatureSelection selection, String heldOutHamPath,
+			String heldOutSpamPath)
+	{
+		ModelSnapshot currentModel;
+		ModelSnapshot selectedModel;
+		synchronized (this)
+		{
+			checkTrainingCounts();
+			currentModel  = model.get();
+			selectedModel = createSnapshot(currentModel.getHamDatasetPath(), currentModel.getSpamDatasetPath(), selection);
+		}
+		int documents     = 0;
+		int correctBefore = 0;
+		int correctAfter  = 0;
+		for (DocumentType documentType : DocumentType.values())
+		{
+			MailMessage[] messages = MailCorpus.open(documentType == DocumentType.HAM ? heldOutHamPath
+																						: heldOutSpamPath).list();
+			for (MailMessage currentMessage : messages)
+			{
+				boolean spam = (documentType == DocumentType.SPAM);
+				try
+				{
+					if (classifyMessage(currentMessage, currentModel).isSpam() == spam)
+					{
+						++correctBefore;
+					}
+					if (classifyMessage(currentMessage, selectedModel).isSpam() == spam)
+					{
+						++correctAfter;
+					}
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+				++documents;
+			}
+		}
+		return new FeatureSelectionReport(selection, documents, currentModel.getVocabulary().size(),
+											selectedModel.getVocabulary().size(), correctBefore, correctAfter);
+	}
+
+	// returns the values of the specified vocabulary word or null if it is not in the vocabulary. the conditional
+	// probabilities are derived from the current training counts, including updates that are not published yet,
+	// unless a feature selection is set, which needs the whole vocabulary to choose words, in which case they are
+	// those of the published model
+	public synchronized QuantifiedWord getQuantifiedWord(String word)
+	{
+		if (counts == null || featureSelection != null)
+		{
+			Vocabulary vocabulary = model.get().getVocabulary();
+			int id = vocabulary.find(word);
+			return (id != -1) ? vocabulary.getQuantifiedWord(id) : null;
+		}
+		int id = counts.getWords().find(word);
+		if (id == -1 || !counts.isInVocabulary(id))
+		{
+			return null;
+		}
+		int hamFrequency  = counts.getWords().getHamFrequency(id);
+		int spamFrequency = counts.getWords().getSpamFrequency(id);
+		return new QuantifiedWord(word, hamFrequency, conditionalProbability(hamFrequency, counts.getVocabularyHamWordCount(), counts.getVocabularySize()),
+									spamFrequency, conditionalProbability(spamFrequency, counts.getVocabularySpamWordCount(), counts.getVocabularySize()));
+	}
+
+	// adds the document at the specified path to the ham training documents, updating the counts of its words in
+	// place. this only costs as much as the words of the document, and documents are classified against the new
+	// counts once publishUpdates is called. returns false if it already is a ham training document. only available
+	// on a SpamChecker created from datasets
+	public synchronized boolean addHam(String documentPath)
+	{
+		return addDocument(documentPath, DocumentType.HAM);
+	}
+
+	// same as addHam for spam documents
+	public synchronized boolean addSpam(String documentPath)
+	{
+		return addDocument(documentPath, DocumentType.SPAM);
+	}
+
+	// removes the document at the specified path from the ham training documents, which must not have changed
+	// since it was added. returns false if it is not a ham training document
+	public synchronized boolean removeHam(String documentPath)
+	{
+		return removeDocument(documentPath, DocumentType.HAM);
+	}
+
+	// same as removeHam for spam documents
+	public synchronized boolean removeSpam(String documentPath)
+	{
+		return removeDocument(documentPath, DocumentType.SPAM);
 	}
 
-	// output all values of datasetWords to a specified text file sorted alphabetically
+	// output all values of datasetWords to a specified text file sorted alphabetically. bigrams are not part of the
+	// text format, so a model with bigrams is exported with its words only
 	public void exportModelToTextFile(String exportFilePath)
 	{
+		ModelSnapshot currentModel = model.get();
+		Vocabulary vocabulary      = currentModel.getVocabulary();
 		try
 		{
 			File exportFile = new File(exportFilePath);
@@ -102,43 +348,45 @@ public class SpamChecker
 			BufferedWriter exportFileBuffer = new BufferedWriter(new FileWriter(exportFile, false));
 			// ADD FIRST LINE WITH ALL NON-VOCABULARY DATA
 			StringBuilder firstLine = new StringBuilder();
-			firstLine.append(hamDatasetPath);
+			firstLine.append(currentModel.getHamDatasetPath());
 			firstLine.append("   ");
-			firstLine.append(spamDatasetPath);
+			firstLine.append(currentModel.getSpamDatasetPath());
 			firstLine.append("   ");
-			firstLine.append(hamProbability);
+			firstLine.append(currentModel.getHamProbability());
 			firstLine.append("   ");
-			firstLine.append(spamProbability);
+			firstLine.append(currentModel.getSpamProbability());
 			firstLine.append("   ");
+			if (vocabulary.getHashBuckets() != 0)
+			{
+				firstLine.append(vocabulary.getHashBuckets());
+				firstLine.append("   ");
+			}
 			exportFileBuffer.write(firstLine.toString());
 			exportFileBuffer.newLine();
-			exportFileBuffer.flush();
 			// ADD A LINE FOR EVERY WORD IN VOCABULARY
-			// create a sorted set of all the QuantifiedWords created from the dataset
-			TreeSet<QuantifiedWord> sortedWords = new TreeSet<QuantifiedWord>(new QuantifiedWordComparator());
-			sortedWords.addAll(vocabulary.values());
-			// loop through sorted set and, for each word in dataSetWords, output a line to datasetWords.txt
-			for (int i = 0; sortedWords.size() != 0; ++i)
+			// sort the ids of all the words created from the dataset alphabetically
+			int[] sortedIds = vocabulary.getSortedIds();
+			// loop through sorted ids and, for each word in dataSetWords, output a line to datasetWords.txt
+			for (int i = 0; i < sortedIds.length; ++i)
 			{
-				QuantifiedWord currentWord = sortedWords.pollFirst();
+				int currentId = sortedIds[i];
 				StringBuilder wordLine = new StringBuilder();
 				wordLine.append(i + 1);
 				wordLine.append("   ");
-				wordLine.append(currentWord.getWord());
+				wordLine.append(vocabulary.getWord(currentId));
 				wordLine.append("   ");
-				wordLine.append(currentWord.getHamFrequency());
+				wordLine.append(vocabulary.getHamFrequency(currentId));
 				wordLine.append("   ");
-				wordLine.append((currentWord.getHamConditionalProbability()) != null ? currentWord.getHamConditionalProbability() : "N/A");
+				wordLine.append(probabilityToString(vocabulary.getHamConditionalProbability(currentId)));
 				wordLine.append("   ");
-				wordLine.append(currentWord.getSpamFrequency());
+				wordLine.append(vocabulary.getSpamFrequency(currentId));
 				wordLine.append("   ");
-				wordLine.append((currentWord.getSpamConditionalProbability()) != null ? currentWord.getSpamConditionalProbability() : "N/A");
+				wordLine.append(probabilityToString(vocabulary.getSpamConditionalProbability(currentId)));
 				exportFileBuffer.write(wordLine.toString());
-				if (sortedWords.size() != 0)
+				if (i != sortedIds.length - 1)
 				{
 					exportFileBuffer.newLine();
 				}
-				exportFileBuffer.flush();
 			}
 			exportFileBuffer.close();
 		}
@@ -147,30 +395,191 @@ public class SpamChecker
 			e.printStackTrace();
 		}
 	}
+
+	// output the model to a specified binary file which loads much faster than the text file, see BinaryModelFormat.
+	// like the text file, it only holds the words of a model with bigrams
+	public void exportModelToBinaryFile(String exportFilePath)
+	{
+		try
+		{
+			BinaryModelFormat.write(exportFilePath, model.get());
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
 	
-	// creates a classified document using dataset information
+	// returns "N/A" for a probability that has not been computed
+	private static String probabilityToString(double probability)
+	{
+		return Double.isNaN(probability) ? "N/A" : Double.toString(probability);
+	}
+
+	// creates a classified document using dataset information. the whole classification runs against the model
+	// current when it starts
 	public ClassifiedDocument classifyDocument(String documentPath)
 	{
-		return new ClassifiedDocument(documentPath, vocabulary, hamProbability, spamProbability);
+		ModelSnapshot currentModel       = model.get();
+		ClassificationCache currentCache = cache;
+		if (currentCache != null)
+		{
+			try
+			{
+				byte[] contents = Files.readAllBytes(Paths.get(documentPath));
+				return currentCache.classify(documentPath, (new File(documentPath)).getName(),
+												new String(contents, Charset.defaultCharset()), currentModel);
+			}
+			catch (IOException e)
+			{
+				// classified below, which reports the file as unreadable
+			}
+		}
+		return new ClassifiedDocument(documentPath, currentModel, ScoringLimits.NONE);
+	}
+
+	// classifies a document already in memory, such as a message held by a mail server, without going through a
+	// file. the name is only used to identify the result
+	public ClassifiedDocument classifyDocument(String documentName, CharSequence documentContents)
+	{
+		ModelSnapshot currentModel       = model.get();
+		ClassificationCache currentCache = cache;
+		if (currentCache != null)
+		{
+			return currentCache.classify(null, documentName, documentContents, currentModel);
+		}
+		return new ClassifiedDocument(documentName, documentContents, currentModel, ScoringLimits.NONE);
+	}
+
+	// classifies the document read from the specified stream, decoding it with the specified charset as it is
+	// scored. the stream is read to its end but not closed. with a classification cache set, the document is read
+	// into memory first and kept for getDocument like a document classified from memory
+	public ClassifiedDocument classifyDocument(String documentName, InputStream input, Charset charset) throws IOException
+	{
+		if (cache != null)
+		{
+			return classifyDocument(documentName, new String(input.readAllBytes(), charset));
+		}
+		return new ClassifiedDocument(documentName, input, charset, model.get(), ScoringLimits.NONE);
+	}
+
+	// classifies the document in the remaining bytes of the specified buffer, decoded with the specified charset.
+	// the position of the buffer is left unchanged. malformed input is replaced, as when reading a file
+	public ClassifiedDocument classifyDocument(String documentName, ByteBuffer buffer, Charset charset)
+	{
+		return classifyDocument(documentName, charset.decode(buffer.duplicate()));
+	}
+
+	// same as the classifyDocument methods above but scoring under the specified limits, see ScoringLimits. the
+	// result tells whether scoring stopped early. these bypass the classification cache, whose entries are only
+	// for complete scores
+	public ClassifiedDocument classifyDocument(String documentPath, ScoringLimits limits)
+	{
+		return new ClassifiedDocument(documentPath, model.get(), limits);
+	}
+
+	public ClassifiedDocument classifyDocument(String documentName, CharSequence documentContents, ScoringLimits limits)
+	{
+		return new ClassifiedDocument(documentName, documentContents, model.get(), limits);
+	}
+
+	public ClassifiedDocument classifyDocument(String documentName, InputStream input, Charset charset,
+			ScoringLimits limits) throws IOException
+	{
+		return new ClassifiedDocument(documentName, input, charset, model.get(), limits);
+	}
+
+	public ClassifiedDocument classifyDocument(String documentName, ByteBuffer buffer, Charset charset,
+			ScoringLimits limits)
+	{
+		return classifyDocument(documentName, charset.decode(buffer.duplicate()), limits);
+	}
+
+	// puts the specified cache in front of the classifyDocument methods without scoring limits, or removes the
+	// cache if null. the cache drops its entries by itself whenever the model changes
+	public void setClassificationCache(ClassificationCache cache)
+	{
+		this.cache = cache;
+	}
+
+	public ClassificationCache getClassificationCache()
+	{
+		return cache;
+	}
+
+	// classifies the specified corpus message, reading it from its file like classifyDocument(String) if it has one
+	// or decoding its bytes with the default charset otherwise
+	public ClassifiedDocument classifyDocument(MailMessage message) throws IOException
+	{
+		if (message.getPath() != null)
+		{
+			return classifyDocument(message.getPath().toString());
+		}
+		return classifyDocument(message.getName(), message.getContents(), Charset.defaultCharset());
+	}
+
+	// classifies the specified corpus message against the specified model, bypassing the classification cache. a
+	// message in its own file is read like classifyDocument(String) does, one inside an mbox file is decoded from
+	// its bytes with the default charset
+	static ClassifiedDocument classifyMessage(MailMessage message, ModelSnapshot model) throws IOException
+	{
+		if (message.getPath() != null)
+		{
+			return new ClassifiedDocument(message.getPath().toString(), model, ScoringLimits.NONE);
+		}
+		return new ClassifiedDocument(message.getName(), Charset.defaultCharset().decode(message.getContents()), model,
+										ScoringLimits.NONE);
+	}
+
+	// classifies every file in the specified folder, or every message of the specified mbox file or Maildir, on the
+	// specified executor, see BatchClassifier. returns the number of documents classified
+	public int classifyDocuments(String documentsFolderPath, Executor executor, int maxInFlight, boolean preserveOrder,
+			ClassificationSink sink) throws InterruptedException
+	{
+		return classifyDocuments(MailCorpus.open(documentsFolderPath), executor, maxInFlight, preserveOrder, sink);
 	}
 
-	// loop through files in specified folder and create a FilteredDocument for each
-	private static HashSet<FilteredDocument> filterDocuments(String documentsFolderPath)
+	// same as classifyDocuments(String, ...) for the messages of the specified corpus, in the order of
+	// MailCorpus.messages
+	public int classifyDocuments(MailCorpus corpus, Executor executor, int maxInFlight, boolean preserveOrder,
+			ClassificationSink sink) throws InterruptedException
 	{
-		HashSet<FilteredDocument> returnSet = new HashSet<FilteredDocument>();
-		File folder = new File(documentsFolderPath);
-		File[] files = folder.listFiles();
-		for (File currentFile : files)
+		Stream<MailMessage> messages = corpus.messages();
+		try
 		{
-			returnSet.add(new FilteredDocument(currentFile.getAbsolutePath()));
+			return new BatchClassifier(this, executor, maxInFlight, preserveOrder, sink)
+					.classifyMessages(messages.iterator());
+		}
+		finally
+		{
+			messages.close();
+		}
+	}
+
+	// classifies every specified document on the specified executor, with at most maxInFlight documents classified
+	// or waiting to be delivered at a time. results are handed to the sink as they complete, or in the order of the
+	// stream if preserveOrder is set. returns the number of documents classified
+	public int classifyDocuments(Stream<Path> documentPaths, Executor executor, int maxInFlight, boolean preserveOrder,
+			ClassificationSink sink) throws InterruptedException
+	{
+		return new BatchClassifier(this, executor, maxInFlight, preserveOrder, sink).classify(documentPaths.iterator());
+	}
+
+	// returns the names of the specified messages, which are the absolute paths of the files of a folder
+	private static HashSet<String> listDocuments(MailMessage[] messages)
+	{
+		HashSet<String> returnSet = new HashSet<String>();
+		for (MailMessage currentMessage : messages)
+		{
+			returnSet.add(currentMessage.getName());
 		}
 		return returnSet;
 	}
 	
-	// parse specified file and returns a HashSet containing its lines
-	private HashSet<String> parseStopWords(String filePath)
+	// parse specified file and returns a TermDictionary containing its lines
+	static TermDictionary parseStopWords(String filePath)
 	{
-		HashSet<String> returnSet = new HashSet<String>();
+		TermDictionary returnDictionary = new TermDictionary();
 		if ((new File(filePath)).exists())
 		{
 			try
@@ -180,7 +589,7 @@ public class SpamChecker
 				while((currentLine = bufferedReader.readLine()) != null)
 				{
 					currentLine = currentLine.trim();
-					returnSet.add(currentLine.toLowerCase());
+					returnDictionary.add(currentLine.toLowerCase());
 				}
 				bufferedReader.close();
 			}
@@ -189,120 +598,258 @@ public class SpamChecker
 				e.printStackTrace();
 			}
 		}
-		return returnSet;
+		return returnDictionary;
 	}
 	
-	// preconditions:- hamDocuments and spamDocuments must be populated with the file information from
-	//                 the hamDatasetPath and spamDatasetPath folder files
-	private HashMap<String, QuantifiedWord> createVocabulary()
-	{
-		HashMap<String, QuantifiedWord> returnMap = new HashMap<String, QuantifiedWord>();
-		this.hamWordCount  = 0;
-		this.spamWordCount = 0;
-		// create a QuantifiedWord for each unique word found in the ham documents, incrementing words that are repeated
-		// while also incrementing hamWordCount
-		for (FilteredDocument currentDocument : this.hamDocuments)
-		{
-			for (String currentWord : currentDocument.getFilteredWords())
-			{
-				currentWord = currentWord.toLowerCase();
-				if (isAcceptableWord(currentWord))
-				{
-					if (returnMap.containsKey(currentWord))
-					{
-						returnMap.get(currentWord).incrementHam();
-					}
-					else
-					{
-						QuantifiedWord currentQuantifiedWord = new QuantifiedWord(currentWord);
-						currentQuantifiedWord.incrementHam();
-						returnMap.put(currentWord, currentQuantifiedWord);
-					}
-					++this.hamWordCount;
-				}
-			}
+	// builds the training state from the specified datasets and publishes the resulting model. the documents are
+	// streamed and counted one at a time before taking the lock of this object, so the memory used grows with the
+	// vocabulary rather than with the size of the datasets. the messages of an mbox file are counted from its
+	// mapping, see MailCorpus
+	private void train(String hamDatasetPath, String spamDatasetPath, int parallelism)
+	{
+		TrainingEvent event = new TrainingEvent();
+		event.begin();
+		long startTime = SpamFilterMetrics.startTime();
+		TermDictionary stopWords = parseStopWords(stopWordsPath);
+		MailMessage[] hamMessages     = MailCorpus.open(hamDatasetPath).list();
+		MailMessage[] spamMessages    = MailCorpus.open(spamDatasetPath).list();
+		HashSet<String> hamDocuments  = listDocuments(hamMessages);
+		HashSet<String> spamDocuments = listDocuments(spamMessages);
+		WordCounts counts;
+		if (parallelism == 1)
+		{
+			counts = countWords(hamMessages, spamMessages, stopWords, hashBuckets, bigrams);
 		}
-		// create a QuantifiedWord for each unique word found in the spam documents, incrementing words that are repeated
-		// while also incrementing spamWordCount
-		for (FilteredDocument currentDocument : this.spamDocuments)
+		else
 		{
-			for (String currentWord : currentDocument.getFilteredWords())
-			{
-				currentWord = currentWord.toLowerCase();
-				if (isAcceptableWord(currentWord))
-				{
-					if (returnMap.containsKey(currentWord))
-					{
-						returnMap.get(currentWord).incrementSpam();
-					}
-					else
-					{
-						QuantifiedWord currentQuantifiedWord = new QuantifiedWord(currentWord);
-						currentQuantifiedWord.incrementSpam();
-						returnMap.put(currentWord, currentQuantifiedWord);
-					}
-					++this.spamWordCount;
-				}
-			}
+			counts = countWordsInParallel(hamMessages, spamMessages, stopWords, hashBuckets, bigrams, parallelism);
+		}
+		SpamFilterMetrics.recordTraining(startTime);
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.hamDatasetPath  = hamDatasetPath;
+			event.spamDatasetPath = spamDatasetPath;
+			event.parallelism     = parallelism;
+			event.documents       = hamDocuments.size() + spamDocuments.size();
+			event.distinctWords   = counts.getWords().size();
+			event.commit();
 		}
-		// remove any returnTree entry with a word that appears 0 or 1 times in either class of document (spam/ham) and
-		// decrement their appearance in the ham and spam word counts
-		ArrayList<String> removalKeys = new ArrayList<String>();
-		for (Entry<String, QuantifiedWord> currentWord : returnMap.entrySet())
+		synchronized (this)
 		{
-			if (currentWord.getValue().getHamFrequency() < 2 && currentWord.getValue().getSpamFrequency() < 2)
+			this.hamDocuments  = hamDocuments;
+			this.spamDocuments = spamDocuments;
+			this.stopWords     = stopWords;
+			this.counts        = counts;
+			this.model.set(createSnapshot(hamDatasetPath, spamDatasetPath, featureSelection));
+			this.countsChanged = false;
+		}
+	}
+
+	private static WordCounts countWords(MailMessage[] hamMessages, MailMessage[] spamMessages,
+			TermDictionary stopWords, int hashBuckets, boolean bigrams)
+	{
+		// count each word found in the ham and spam documents. rare words are only left out once a model is built
+		// from the counts
+		WordCounts counts = new WordCounts(hashBuckets, bigrams);
+		try
+		{
+			for (MailMessage currentMessage : hamMessages)
+			{
+				counts.addDocument(currentMessage, DocumentType.HAM, stopWords);
+			}
+			for (MailMessage currentMessage : spamMessages)
 			{
-				removalKeys.add(currentWord.getKey());
-				this.hamWordCount  -= currentWord.getValue().getHamFrequency();
-				this.spamWordCount -= currentWord.getValue().getSpamFrequency();
+				counts.addDocument(currentMessage, DocumentType.SPAM, stopWords);
 			}
 		}
-		for (String currentKey : removalKeys)
+		catch (IOException e)
 		{
-			returnMap.remove(currentKey);
+			// failed like WordCountTask fails, so that training does not depend on the parallelism
+			throw new UncheckedIOException(e);
 		}
-		return returnMap;
+		return counts;
 	}
 
-	// this method controls the assumptions used when accepting or rejecting words to be used in the vocabulary
-	private boolean isAcceptableWord(String word)
+	// same as countWords but counts the specified messages on a fork/join pool, each worker counting into its own
+	// partial WordCounts before they are merged. the stop words are compiled into a filter once for every worker
+	private static WordCounts countWordsInParallel(MailMessage[] hamMessages, MailMessage[] spamMessages,
+			TermDictionary stopWords, int hashBuckets, boolean bigrams, int parallelism)
 	{
-		return isAcceptableLength(word, MIN_WORD_LENGTH, MAX_WORD_LENGTH) &&
-				hasWordCharactersOnly(word) &&
-				!isCharacterRepetition(word) &&
-				!this.stopWords.contains(word);
+		WordFilter filter      = new WordFilter(stopWords);
+		WordCountTask hamTask  = new WordCountTask(hamMessages, 0, hamMessages.length, DocumentType.HAM, filter,
+												hashBuckets, bigrams);
+		WordCountTask spamTask = new WordCountTask(spamMessages, 0, spamMessages.length, DocumentType.SPAM, filter,
+												hashBuckets, bigrams);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		WordCounts counts;
+		try
+		{
+			pool.execute(spamTask);
+			counts = pool.invoke(hamTask);
+			counts.merge(spamTask.join());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return counts;
 	}
 
-	// checks if every character in a word is the same
-	private static boolean isCharacterRepetition(String word)
+	// adds or removes the words of the specified document file. a file that cannot be read is reported and counts
+	// as far as it was read
+	static void countDocument(WordCounts counts, String documentPath, DocumentType documentType,
+			TermDictionary stopWords, boolean add)
 	{
-		for (int i = 1; i < word.length(); ++i)
+		try
 		{
-			if (word.charAt(i) != word.charAt(i - 1))
+			if (add)
+			{
+				counts.addDocument(documentPath, documentType, stopWords);
+			}
+			else
 			{
-				return false;
+				counts.removeDocument(documentPath, documentType, stopWords);
 			}
 		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// adds the words of the specified message, reporting a message that cannot be read like countDocument above
+	static void countDocument(WordCounts counts, MailMessage message, DocumentType documentType,
+			TermDictionary stopWords)
+	{
+		try
+		{
+			counts.addDocument(message, documentType, stopWords);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// documents are identified by their absolute path, as listDocuments names the training documents, while they
+	// are read from the specified path
+	private boolean addDocument(String documentPath, DocumentType documentType)
+	{
+		checkTrainingCounts();
+		if (!getDocuments(documentType).add((new File(documentPath)).getAbsolutePath()))
+		{
+			return false;
+		}
+		countDocument(counts, documentPath, documentType, stopWords, true);
+		countsChanged = true;
+		return true;
+	}
+
+	private boolean removeDocument(String documentPath, DocumentType documentType)
+	{
+		checkTrainingCounts();
+		if (!getDocuments(documentType).remove((new File(documentPath)).getAbsolutePath()))
+		{
+			return false;
+		}
+		countDocument(counts, documentPath, documentType, stopWords, false);
+		countsChanged = true;
 		return true;
 	}
 
-	// checks if the specified word has desirable traits
-	private static boolean isAcceptableLength(String word, int minLength, int maxLength)
+	private HashSet<String> getDocuments(DocumentType documentType)
+	{
+		return (documentType == DocumentType.HAM) ? hamDocuments : spamDocuments;
+	}
+
+	private void checkTrainingCounts()
+	{
+		if (counts == null)
+		{
+			throw new IllegalStateException("A SpamChecker loaded from a model file has no training counts to update");
+		}
+	}
+
+	// builds a new model from the training counts, leaving out the rare words and then the words not chosen by the
+	// specified feature selection, if any. the word counts the probabilities are smoothed over are those of the
+	// words kept. must hold the lock of this object
+	private ModelSnapshot createSnapshot(String hamDatasetPath, String spamDatasetPath, FeatureSelection selection)
 	{
-		return word.length() >= minLength && word.length() <= maxLength;
+		return createSnapshot(counts, hamDocuments.size(), spamDocuments.size(), hamDatasetPath, spamDatasetPath,
+								selection);
 	}
 
-	// checks every character in the string and returns false if one is not a letter or a hyphen ('-')
-	private static boolean hasWordCharactersOnly(String word)
+	// builds a model from the specified counts of the specified numbers of ham and spam documents
+	static ModelSnapshot createSnapshot(WordCounts counts, int hamDocuments, int spamDocuments, String hamDatasetPath,
+			String spamDatasetPath, FeatureSelection selection)
 	{
-		for (int i = 0; i < word.length(); ++i)
+		ModelBuildEvent event = new ModelBuildEvent();
+		event.begin();
+		long startTime = SpamFilterMetrics.startTime();
+		Vocabulary vocabulary  = counts.getWords().withoutRareWords(MIN_WORD_FREQUENCY);
+		int hamWordCount       = counts.getVocabularyHamWordCount();
+		int spamWordCount      = counts.getVocabularySpamWordCount();
+		if (selection != null)
 		{
-			if (!isAlphabeticCharacter(word.charAt(i)) && word.charAt(i) != '-')
+			vocabulary    = selection.select(vocabulary);
+			hamWordCount  = (int)vocabulary.getTotalHamFrequency();
+			spamWordCount = (int)vocabulary.getTotalSpamFrequency();
+		}
+		double hamProbability  = (double)hamDocuments / (hamDocuments + spamDocuments);
+		double spamProbability = (double)spamDocuments / (hamDocuments + spamDocuments);
+		computeConditionalProbabilities(vocabulary, hamWordCount, spamWordCount);
+		BigramTable bigrams = (counts.getBigrams() != null) ? createBigrams(counts, vocabulary) : null;
+		SpamFilterMetrics.recordModelBuild(startTime);
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.distinctWords  = counts.getWords().size();
+			event.vocabularySize = vocabulary.size();
+			event.commit();
+		}
+		return new ModelSnapshot(hamDatasetPath, spamDatasetPath, hamProbability, spamProbability, hamWordCount,
+									spamWordCount, vocabulary, bigrams);
+	}
+
+	// the bigrams of the specified counts that are not rare and whose words are both in the specified vocabulary,
+	// keyed by the ids of that vocabulary, with their probabilities smoothed over the bigrams kept. a bigram never
+	// appears more often than either of its words, so the words of a bigram that is not rare are only missing from
+	// the vocabulary if a feature selection left them out
+	private static BigramTable createBigrams(WordCounts counts, Vocabulary vocabulary)
+	{
+		Vocabulary countedWords    = counts.getWords();
+		BigramTable countedBigrams = counts.getBigrams();
+		int[] ids                  = new int[countedWords.size()];
+		for (int id = 0; id < ids.length; ++id)
+		{
+			ids[id] = vocabulary.find(countedWords, id);
+		}
+		BigramTable bigrams = new BigramTable();
+		for (int countedIndex = 0; countedIndex < countedBigrams.size(); ++countedIndex)
+		{
+			long countedKey   = countedBigrams.getKey(countedIndex);
+			int firstId       = ids[BigramTable.getFirstId(countedKey)];
+			int secondId      = ids[BigramTable.getSecondId(countedKey)];
+			int hamFrequency  = countedBigrams.getHamFrequency(countedIndex);
+			int spamFrequency = countedBigrams.getSpamFrequency(countedIndex);
+			if (firstId != -1 && secondId != -1
+					&& (hamFrequency >= MIN_WORD_FREQUENCY || spamFrequency >= MIN_WORD_FREQUENCY))
 			{
-				return false;
+				bigrams.addFrequencies(bigrams.add(BigramTable.key(firstId, secondId)), hamFrequency, spamFrequency);
 			}
 		}
-		return true;
+		long hamBigramCount  = bigrams.getTotalHamFrequency();
+		long spamBigramCount = bigrams.getTotalSpamFrequency();
+		for (int index = 0; index < bigrams.size(); ++index)
+		{
+			double probabilityGivenHam  = conditionalProbability(bigrams.getHamFrequency(index), hamBigramCount,
+																	bigrams.size());
+			double probabilityGivenSpam = conditionalProbability(bigrams.getSpamFrequency(index), spamBigramCount,
+																	bigrams.size());
+			bigrams.setConditionalProbabilities(index, probabilityGivenHam, probabilityGivenSpam);
+		}
+		return bigrams;
 	}
 
 	// checks if a specified character is an uppercase or lowercase letter
@@ -311,66 +858,93 @@ public class SpamChecker
 		return (character >= 65 && character <= 90) || (character >= 97 && character <= 122);
 	}
 
-	private void computeConditionalProbabilities()
+	private static void computeConditionalProbabilities(Vocabulary vocabulary, int hamWordCount, int spamWordCount)
 	{
-		for (Entry<String,QuantifiedWord> currentWordEntry : vocabulary.entrySet())
+		for (int id = 0; id < vocabulary.size(); ++id)
 		{
-			QuantifiedWord currentQuantifiedWord = currentWordEntry.getValue();
-			
 			// compute probability of current word given a ham document
-			Double probabilityGivenHam = ((double)(currentQuantifiedWord.getHamFrequency() + SMOOTHING_FACTOR)) / 
-											(hamWordCount + (vocabulary.size() * SMOOTHING_FACTOR));
-			currentQuantifiedWord.setHamConditionalProbability(probabilityGivenHam);
+			double probabilityGivenHam = conditionalProbability(vocabulary.getHamFrequency(id), hamWordCount, vocabulary.size());
 			
 			// compute probability of current word given a spam document
-			Double probabilityGivenSpam = ((double)(currentQuantifiedWord.getSpamFrequency() + SMOOTHING_FACTOR)) /
-											(spamWordCount + (vocabulary.size() * SMOOTHING_FACTOR));
-			currentQuantifiedWord.setSpamConditionalProbability(probabilityGivenSpam);
+			double probabilityGivenSpam = conditionalProbability(vocabulary.getSpamFrequency(id), spamWordCount, vocabulary.size());
+			vocabulary.setConditionalProbabilities(id, probabilityGivenHam, probabilityGivenSpam);
+		}
+	}
+
+	// smoothed probability of a word with the specified frequency given a document of a class with the specified
+	// word count
+	static double conditionalProbability(int frequency, long wordCount, int vocabularySize)
+	{
+		return ((double)(frequency + SMOOTHING_FACTOR)) / (wordCount + (vocabularySize * SMOOTHING_FACTOR));
+	}
+
+	// reads the text or binary model file at the specified path
+	private static ModelSnapshot readModel(String modelPath) throws IOException
+	{
+		ModelLoadEvent event = new ModelLoadEvent();
+		event.begin();
+		long startTime = SpamFilterMetrics.startTime();
+		boolean binary = BinaryModelFormat.isBinaryModel(modelPath);
+		ModelSnapshot returnModel = binary ? BinaryModelFormat.read(modelPath)
+											: TextModelFormat.read(modelPath, Runtime.getRuntime().availableProcessors());
+		SpamFilterMetrics.recordModelLoad(startTime);
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.modelPath      = modelPath;
+			event.binary         = binary;
+			event.vocabularySize = returnModel.getVocabulary().size();
+			event.commit();
 		}
+		return returnModel;
 	}
 
-	// initializes the hamDatasetPath, spamDatasetPath, hamProbability, spamProbability, and vocabulary
-	// from the file at the specified path
-	private void parseModel(String modelPath)
+	// reads the hamDatasetPath, spamDatasetPath, hamProbability, spamProbability, and vocabulary from the text
+	// model file at the specified path a line at a time. TextModelFormat reads the same files faster and falls
+	// back to this
+	static ModelSnapshot parseModel(String modelPath) throws IOException
 	{
-		File modelFile = new File(modelPath);
+		String hamDatasetPath  = null;
+		String spamDatasetPath = null;
+		double hamProbability  = 0;
+		double spamProbability = 0;
+		Vocabulary vocabulary  = null;
+		BufferedReader modelFileReader = new BufferedReader(new FileReader(new File(modelPath)));
 		try
 		{
-			BufferedReader modelFileReader = new BufferedReader(new FileReader(modelFile));
 			String line;
 			// initialize non-vocabulary data using first line
 			if ((line = modelFileReader.readLine()) != null)
 			{
 				String[] wordLine = line.split("\\s+");
-				this.hamDatasetPath  = wordLine[0];
-				this.spamDatasetPath = wordLine[1];
-				this.hamProbability  = Double.parseDouble(wordLine[2]);
-				this.spamProbability = Double.parseDouble(wordLine[3]);
+				hamDatasetPath  = wordLine[0];
+				spamDatasetPath = wordLine[1];
+				hamProbability  = Double.parseDouble(wordLine[2]);
+				spamProbability = Double.parseDouble(wordLine[3]);
+				// a fifth value is the bucket count of a hashed vocabulary
+				if (wordLine.length > 4)
+				{
+					vocabulary = new Vocabulary(new HashedTermIndex(Integer.parseInt(wordLine[4])), 16);
+				}
+			}
+			if (vocabulary == null)
+			{
+				vocabulary = new Vocabulary();
 			}
 			// initialize vocabulary
-
-			this.vocabulary = new HashMap<String, QuantifiedWord>();
 			while ((line = modelFileReader.readLine()) != null)
 			{
 				String[] wordLine = line.split("\\s+");
-				QuantifiedWord quantifiedWord = new QuantifiedWord(wordLine[1], Integer.parseInt(wordLine[2]),
-																	Double.parseDouble(wordLine[3]),
-																	Integer.parseInt(wordLine[4]),
-																	Double.parseDouble(wordLine[5]));
-				this.vocabulary.put(wordLine[1], quantifiedWord);
-				
+				int id = vocabulary.add(wordLine[1]);
+				vocabulary.addFrequencies(id, Integer.parseInt(wordLine[2]), Integer.parseInt(wordLine[4]));
+				vocabulary.setConditionalProbabilities(id, Double.parseDouble(wordLine[3]), Double.parseDouble(wordLine[5]));
 			}
-			modelFileReader.close();
 		}
-		catch (FileNotFoundException e)
-		{
-			e.printStackTrace();
-		} 
-		catch (IOException e)
+		finally
 		{
-			e.printStackTrace();
+			modelFileReader.close();
 		}
+		// the text format has no word counts
+		return new ModelSnapshot(hamDatasetPath, spamDatasetPath, hamProbability, spamProbability, 0, 0, vocabulary);
 	}
-	
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,281 @@
+package spamfilter;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// counters and latency histograms for the stages of training, model loading and classification. disabled by
+// default, in which case every hook is a single volatile read: no clock is read and nothing is recorded. enabled
+// with -Dspamfilter.metrics=true or setEnabled, which also registers the metrics with the platform MBean server.
+// the stages are also emitted as JDK Flight Recorder events in the Spam Filter category, which cost nothing
+// unless a recording enables them
+public class SpamFilterMetrics implements SpamFilterMetricsMXBean
+{
+	public static final String OBJECT_NAME = "spamfilter:type=Metrics";
+	public static final String ENABLED_PROPERTY = "spamfilter.metrics";
+	static final long NOT_TIMED = Long.MIN_VALUE;		// start time of a stage begun while the metrics were disabled
+	private static final SpamFilterMetrics INSTANCE = new SpamFilterMetrics();
+	private static volatile boolean enabled;
+	private static boolean registered;
+	private final LatencyHistogram documentRead;
+	private final LatencyHistogram documentTokenization;
+	private final LatencyHistogram training;
+	private final LatencyHistogram modelBuild;
+	private final LatencyHistogram modelLoad;
+	private final LatencyHistogram classification;
+	private final LatencyHistogram classifiedDocumentTokenization;
+	private final LongAdder documentsTokenized;
+	private final LongAdder trainingTokens;
+	private final LongAdder classificationTokens;
+	private final LongAdder classificationVocabularyHits;
+	private final LongAdder classifiedDocumentTokens;
+
+	static
+	{
+		if (Boolean.getBoolean(ENABLED_PROPERTY))
+		{
+			INSTANCE.setEnabled(true);
+		}
+	}
+
+	private SpamFilterMetrics()
+	{
+		this.documentRead                   = new LatencyHistogram();
+		this.documentTokenization           = new LatencyHistogram();
+		this.training                       = new LatencyHistogram();
+		this.modelBuild                     = new LatencyHistogram();
+		this.modelLoad                      = new LatencyHistogram();
+		this.classification                 = new LatencyHistogram();
+		this.classifiedDocumentTokenization = new LatencyHistogram();
+		this.documentsTokenized             = new LongAdder();
+		this.trainingTokens                 = new LongAdder();
+		this.classificationTokens           = new LongAdder();
+		this.classificationVocabularyHits   = new LongAdder();
+		this.classifiedDocumentTokens       = new LongAdder();
+	}
+
+	public static SpamFilterMetrics getInstance()
+	{
+		return INSTANCE;
+	}
+
+	@Override
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled)
+	{
+		if (enabled)
+		{
+			register();
+		}
+		SpamFilterMetrics.enabled = enabled;
+	}
+
+	@Override
+	public void reset()
+	{
+		documentRead.reset();
+		documentTokenization.reset();
+		training.reset();
+		modelBuild.reset();
+		modelLoad.reset();
+		classification.reset();
+		classifiedDocumentTokenization.reset();
+		documentsTokenized.reset();
+		trainingTokens.reset();
+		classificationTokens.reset();
+		classificationVocabularyHits.reset();
+		classifiedDocumentTokens.reset();
+	}
+
+	@Override
+	public StageStatistics getDocumentRead()
+	{
+		return StageStatistics.of(documentRead);
+	}
+
+	@Override
+	public StageStatistics getDocumentTokenization()
+	{
+		return StageStatistics.of(documentTokenization);
+	}
+
+	@Override
+	public StageStatistics getTraining()
+	{
+		return StageStatistics.of(training);
+	}
+
+	@Override
+	public StageStatistics getModelBuild()
+	{
+		return StageStatistics.of(modelBuild);
+	}
+
+	@Override
+	public StageStatistics getModelLoad()
+	{
+		return StageStatistics.of(modelLoad);
+	}
+
+	@Override
+	public StageStatistics getClassification()
+	{
+		return StageStatistics.of(classification);
+	}
+
+	@Override
+	public StageStatistics getClassifiedDocumentTokenization()
+	{
+		return StageStatistics.of(classifiedDocumentTokenization);
+	}
+
+	@Override
+	public long getDocumentsTokenized()
+	{
+		return documentsTokenized.sum();
+	}
+
+	@Override
+	public long getTrainingTokens()
+	{
+		return trainingTokens.sum();
+	}
+
+	@Override
+	public long getClassificationTokens()
+	{
+		return classificationTokens.sum();
+	}
+
+	@Override
+	public long getClassificationVocabularyHits()
+	{
+		return classificationVocabularyHits.sum();
+	}
+
+	@Override
+	public long getClassifiedDocumentTokens()
+	{
+		return classifiedDocumentTokens.sum();
+	}
+
+	@Override
+	public double getVocabularyHitRate()
+	{
+		long tokens = classificationTokens.sum();
+		return (tokens == 0) ? 0 : (double)classificationVocabularyHits.sum() / tokens;
+	}
+
+	@Override
+	public double getTokensPerClassifiedDocument()
+	{
+		long documents = classification.getCount();
+		return (documents == 0) ? 0 : (double)classificationTokens.sum() / documents;
+	}
+
+	// returns the time a stage starts at, to be passed to the matching record method once it ends
+	static long startTime()
+	{
+		return enabled ? System.nanoTime() : NOT_TIMED;
+	}
+
+	static boolean isRecording()
+	{
+		return enabled;
+	}
+
+	// records the two stages of filtering a document from their durations, measured by the caller so that the
+	// clock is read once between them
+	static void recordDocumentFilter(long readNanos, long tokenizationNanos, int tokens)
+	{
+		if (enabled)
+		{
+			INSTANCE.documentRead.record(readNanos);
+			INSTANCE.documentTokenization.record(tokenizationNanos);
+			INSTANCE.documentsTokenized.increment();
+			INSTANCE.trainingTokens.add(tokens);
+		}
+	}
+
+	// same as recordDocumentFilter for the filtered document of a classified document, see
+	// ClassifiedDocument.getDocument, which is kept out of the training statistics
+	static void recordClassifiedDocumentFilter(long readNanos, long tokenizationNanos, int tokens)
+	{
+		if (enabled)
+		{
+			INSTANCE.documentRead.record(readNanos);
+			INSTANCE.classifiedDocumentTokenization.record(tokenizationNanos);
+			INSTANCE.classifiedDocumentTokens.add(tokens);
+		}
+	}
+
+	// records a training document that was read and tokenized in a single pass
+	static void recordDocumentTokenization(long startTime, int tokens)
+	{
+		if (startTime != NOT_TIMED)
+		{
+			INSTANCE.documentTokenization.record(System.nanoTime() - startTime);
+			INSTANCE.documentsTokenized.increment();
+			INSTANCE.trainingTokens.add(tokens);
+		}
+	}
+
+	static void recordTraining(long startTime)
+	{
+		if (startTime != NOT_TIMED)
+		{
+			INSTANCE.training.record(System.nanoTime() - startTime);
+		}
+	}
+
+	static void recordModelBuild(long startTime)
+	{
+		if (startTime != NOT_TIMED)
+		{
+			INSTANCE.modelBuild.record(System.nanoTime() - startTime);
+		}
+	}
+
+	static void recordModelLoad(long startTime)
+	{
+		if (startTime != NOT_TIMED)
+		{
+			INSTANCE.modelLoad.record(System.nanoTime() - startTime);
+		}
+	}
+
+	static void recordClassification(long startTime, int tokens, int vocabularyHits)
+	{
+		if (startTime != NOT_TIMED)
+		{
+			INSTANCE.classification.record(System.nanoTime() - startTime);
+			INSTANCE.classificationTokens.add(tokens);
+			INSTANCE.classificationVocabularyHits.add(vocabularyHits);
+		}
+	}
+
+	// registers the metrics with the platform MBean server the first time they are enabled
+	private static synchronized void register()
+	{
+		if (registered)
+		{
+			return;
+		}
+		registered = true;
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+		}
+		catch (JMException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package spamfilter;
+
+// management interface of SpamFilterMetrics, registered as spamfilter:type=Metrics
+public interface SpamFilterMetricsMXBean
+{
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	void reset();
+
+	// reading a FilteredDocument from its file
+	StageStatistics getDocumentRead();
+
+	// removing the tags of a training document and splitting it into words, including reading it when it is
+	// streamed from its file, as it is when training
+	StageStatistics getDocumentTokenization();
+
+	// counting the words of the dataset documents when training
+	StageStatistics getTraining();
+
+	// pruning the vocabulary and computing the probabilities of a new model
+	StageStatistics getModelBuild();
+
+	// reading a model file
+	StageStatistics getModelLoad();
+
+	// reading, tokenizing and scoring a document being classified, done in a single pass
+	StageStatistics getClassification();
+
+	// splitting a classified document into words when its FilteredDocument is asked for, see
+	// ClassifiedDocument.getDocument. kept apart from the tokenization of training documents
+	StageStatistics getClassifiedDocumentTokenization();
+
+	long getDocumentsTokenized();
+
+	long getTrainingTokens();
+
+	long getClassificationTokens();
+
+	// classification tokens found in the vocabulary of the model
+	long getClassificationVocabularyHits();
+
+	// tokens of the FilteredDocuments of classified documents
+	long getClassifiedDocumentTokens();
+
+	double getVocabularyHitRate();
+
+	double getTokensPerClassifiedDocument();
+}
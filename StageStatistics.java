@@ -0,0 +1,62 @@
+package spamfilter;
+
+import java.beans.ConstructorProperties;
+
+// point in time summary of the durations recorded for one stage of SpamFilterMetrics, in microseconds. exposed
+// over JMX as composite data
+public class StageStatistics
+{
+	private final long count;
+	private final double meanMicros;
+	private final double p50Micros;
+	private final double p99Micros;
+	private final double maxMicros;
+
+	@ConstructorProperties({"count", "meanMicros", "p50Micros", "p99Micros", "maxMicros"})
+	public StageStatistics(long count, double meanMicros, double p50Micros, double p99Micros, double maxMicros)
+	{
+		this.count      = count;
+		this.meanMicros = meanMicros;
+		this.p50Micros  = p50Micros;
+		this.p99Micros  = p99Micros;
+		this.maxMicros  = maxMicros;
+	}
+
+	public static StageStatistics of(LatencyHistogram histogram)
+	{
+		return new StageStatistics(histogram.getCount(), histogram.getMeanNanos() / 1000,
+									histogram.getPercentileNanos(50) / 1000.0, histogram.getPercentileNanos(99) / 1000.0,
+									histogram.getMaxNanos() / 1000.0);
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public double getMeanMicros()
+	{
+		return meanMicros;
+	}
+
+	public double getP50Micros()
+	{
+		return p50Micros;
+	}
+
+	public double getP99Micros()
+	{
+		return p99Micros;
+	}
+
+	public double getMaxMicros()
+	{
+		return maxMicros;
+	}
+
+	public String toString()
+	{
+		return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", count, meanMicros, p50Micros,
+								p99Micros, maxMicros);
+	}
+}
@@ -0,0 +1,300 @@
+package spamfilter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// open addressing hash table mapping terms to dense int ids, starting at 0 in insertion order. terms are hashed
+// and compared directly against char ranges, so looking up a term never creates a string, and the characters
+// of every term are stored back to back in a single array
+public class TermDictionary implements TermIndex
+{
+	private static final int INITIAL_CAPACITY = 16;
+	private int[] slots;				// id + 1 of the term in each slot, 0 for an empty slot
+	private int[] termHashes;			// hash of every term indexed by id
+	private int[] termOffsets;			// start of every term in termCharacters, followed by the end of the last one
+	private char[] termCharacters;
+	private int size;
+
+	public TermDictionary()
+	{
+		this(INITIAL_CAPACITY);
+	}
+
+	public TermDictionary(int expectedSize)
+	{
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < expectedSize * 2)
+		{
+			capacity <<= 1;
+		}
+		this.slots          = new int[capacity];
+		this.termHashes     = new int[Math.max(expectedSize, INITIAL_CAPACITY)];
+		this.termOffsets    = new int[Math.max(expectedSize, INITIAL_CAPACITY) + 1];
+		this.termCharacters = new char[Math.max(expectedSize, INITIAL_CAPACITY) * 8];
+		this.size           = 0;
+	}
+
+	// a dictionary of the specified size over tables laid out like those of another dictionary, which
+	// BinaryModelFormat reads back from a model file instead of adding every term again. the arrays are not copied
+	TermDictionary(int[] slots, int[] termHashes, int[] termOffsets, char[] termCharacters, int size)
+	{
+		this.slots          = slots;
+		this.termHashes     = termHashes;
+		this.termOffsets    = termOffsets;
+		this.termCharacters = termCharacters;
+		this.size           = size;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	// returns the id of the specified term or -1 if it is not in the dictionary
+	public int find(char[] characters, int offset, int length)
+	{
+		int hash = hash(characters, offset, length);
+		int mask = slots.length - 1;
+		for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask)
+		{
+			int id = slots[slot] - 1;
+			if (termHashes[id] == hash && termEquals(id, characters, offset, length))
+			{
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	// returns the id of the specified term or -1 if it is not in the dictionary
+	public int find(CharSequence term)
+	{
+		int hash = hash(term);
+		int mask = slots.length - 1;
+		for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask)
+		{
+			int id = slots[slot] - 1;
+			if (termHashes[id] == hash && termEquals(id, term))
+			{
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	// returns the id of the specified term, adding it to the dictionary with the next id if it is not already in it
+	public int add(char[] characters, int offset, int length)
+	{
+		return add(characters, offset, length, hash(characters, offset, length));
+	}
+
+	// same as add above for a term whose hash was already computed with hash, see WordFilter
+	int add(char[] characters, int offset, int length, int hash)
+	{
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		for (; slots[slot] != 0; slot = (slot + 1) & mask)
+		{
+			int id = slots[slot] - 1;
+			if (termHashes[id] == hash && termEquals(id, characters, offset, length))
+			{
+				return id;
+			}
+		}
+		int id = size++;
+		if (id == termHashes.length)
+		{
+			termHashes  = Arrays.copyOf(termHashes, id * 2);
+			termOffsets = Arrays.copyOf(termOffsets, id * 2 + 1);
+		}
+		int start = termOffsets[id];
+		if (start + length > termCharacters.length)
+		{
+			termCharacters = Arrays.copyOf(termCharacters, Math.max(termCharacters.length * 2, start + length));
+		}
+		System.arraycopy(characters, offset, termCharacters, start, length);
+		termOffsets[id + 1] = start + length;
+		termHashes[id]      = hash;
+		slots[slot]         = id + 1;
+		if (size * 2 > slots.length)
+		{
+			rehash(slots.length * 2);
+		}
+		return id;
+	}
+
+	public int add(String term)
+	{
+		return add(term.toCharArray(), 0, term.length());
+	}
+
+	// returns the id of the term with the specified id in another dictionary, or -1 if it is not in this one
+	public int find(TermIndex other, int otherId)
+	{
+		TermDictionary otherDictionary = (TermDictionary)other;
+		return find(otherDictionary.termCharacters, otherDictionary.termOffsets[otherId], otherDictionary.getTermLength(otherId));
+	}
+
+	// adds the term with the specified id in another dictionary to this one and returns its id in this one
+	public int add(TermIndex other, int otherId)
+	{
+		TermDictionary otherDictionary = (TermDictionary)other;
+		return add(otherDictionary.termCharacters, otherDictionary.termOffsets[otherId], otherDictionary.getTermLength(otherId));
+	}
+
+	public String getTerm(int id)
+	{
+		return new String(termCharacters, termOffsets[id], getTermLength(id));
+	}
+
+	public int getTermLength(int id)
+	{
+		return termOffsets[id + 1] - termOffsets[id];
+	}
+
+	// compares the terms with the specified ids the same way String.compareTo does
+	public int compare(int id1, int id2)
+	{
+		int offset1 = termOffsets[id1];
+		int offset2 = termOffsets[id2];
+		int length1 = getTermLength(id1);
+		int length2 = getTermLength(id2);
+		for (int i = 0; i < Math.min(length1, length2); ++i)
+		{
+			if (termCharacters[offset1 + i] != termCharacters[offset2 + i])
+			{
+				return termCharacters[offset1 + i] - termCharacters[offset2 + i];
+			}
+		}
+		return length1 - length2;
+	}
+
+	// returns the id of every term sorted alphabetically by term
+	public int[] getSortedIds()
+	{
+		Integer[] sortedIds = new Integer[size];
+		for (int i = 0; i < size; ++i)
+		{
+			sortedIds[i] = i;
+		}
+		Arrays.sort(sortedIds, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer id1, Integer id2)
+			{
+				return TermDictionary.this.compare(id1, id2);
+			}
+		});
+		int[] returnIds = new int[size];
+		for (int i = 0; i < size; ++i)
+		{
+			returnIds[i] = sortedIds[i];
+		}
+		return returnIds;
+	}
+
+	public TermIndex newIndex(int expectedSize)
+	{
+		return new TermDictionary(expectedSize);
+	}
+
+	// the tables of the dictionary, which BinaryModelFormat writes as they are. they are only meaningful up to size,
+	// except for the slots, and must not be modified
+	int[] getSlots()
+	{
+		return slots;
+	}
+
+	int[] getTermHashes()
+	{
+		return termHashes;
+	}
+
+	int[] getTermOffsets()
+	{
+		return termOffsets;
+	}
+
+	char[] getTermCharacters()
+	{
+		return termCharacters;
+	}
+
+	private boolean termEquals(int id, char[] characters, int offset, int length)
+	{
+		int start = termOffsets[id];
+		if (termOffsets[id + 1] - start != length)
+		{
+			return false;
+		}
+		for (int i = 0; i < length; ++i)
+		{
+			if (termCharacters[start + i] != characters[offset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean termEquals(int id, CharSequence term)
+	{
+		int start = termOffsets[id];
+		if (termOffsets[id + 1] - start != term.length())
+		{
+			return false;
+		}
+		for (int i = 0; i < term.length(); ++i)
+		{
+			if (termCharacters[start + i] != term.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash(int capacity)
+	{
+		slots    = new int[capacity];
+		int mask = capacity - 1;
+		for (int id = 0; id < size; ++id)
+		{
+			int slot = termHashes[id] & mask;
+			while (slots[slot] != 0)
+			{
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = id + 1;
+		}
+	}
+
+	static int hash(char[] characters, int offset, int length)
+	{
+		int hash = 0;
+		for (int i = offset; i < offset + length; ++i)
+		{
+			hash = 31 * hash + characters[i];
+		}
+		return mix(hash);
+	}
+
+	private static int hash(CharSequence term)
+	{
+		int hash = 0;
+		for (int i = 0; i < term.length(); ++i)
+		{
+			hash = 31 * hash + term.charAt(i);
+		}
+		return mix(hash);
+	}
+
+	// spreads the bits of a polynomial hash so that similar terms do not probe the same run of slots
+	static int mix(int hash)
+	{
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		return hash;
+	}
+}
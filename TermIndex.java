@@ -0,0 +1,39 @@
+package spamfilter;
+
+// maps the terms of a Vocabulary to dense int ids, starting at 0 in insertion order. see TermDictionary, which
+// keeps every term, and HashedTermIndex, which keeps none
+public interface TermIndex
+{
+	int size();
+
+	// returns the id of the specified term or -1 if it is not in the index
+	int find(char[] characters, int offset, int length);
+
+	// returns the id of the specified term or -1 if it is not in the index
+	int find(CharSequence term);
+
+	// returns the id of the specified term, adding it if it is not in the index
+	int add(char[] characters, int offset, int length);
+
+	// adds a term as returned by getTerm, which is how model files store the terms of an index
+	int add(String term);
+
+	// returns the id in this index of the term with the specified id in another index of the same kind, or -1 if
+	// it is not in this index
+	int find(TermIndex other, int otherId);
+
+	// adds the term with the specified id in another index of the same kind to this one and returns its id in
+	// this one
+	int add(TermIndex other, int otherId);
+
+	String getTerm(int id);
+
+	// length of the shortest term the specified id can stand for
+	int getTermLength(int id);
+
+	// returns every id in the order of getTerm
+	int[] getSortedIds();
+
+	// returns a new empty index of the same kind and configuration
+	TermIndex newIndex(int expectedSize);
+}
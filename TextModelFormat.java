@@ -0,0 +1,332 @@
+package spamfilter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// reads SpamChecker models in the text format written by SpamChecker.exportModelToTextFile, whitespace separated:
+//
+//   <ham dataset path> <spam dataset path> <ham probability> <spam probability> [hash buckets]
+//   <index> <word> <ham frequency> <ham probability> <spam frequency> <spam probability>
+//   ...
+//
+// the file is memory-mapped and the fields of every line are parsed in place, see DecimalParser. the lines after
+// the first are split into chunks that end at line ends and are parsed in parallel, then the vocabulary is
+// assembled from the chunks in file order, so the model is the same as reading the file a line at a time the way
+// SpamChecker.parseModel does. a line that is not plain ASCII is decoded and split like parseModel would, and a
+// file that cannot be mapped whole or is not in an ASCII compatible default charset is left to parseModel
+public class TextModelFormat
+{
+	private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+	private static final int FIELDS = 6;
+
+	public static ModelSnapshot read(String modelPath, int parallelism) throws IOException
+	{
+		Charset charset = Charset.defaultCharset();
+		if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.ISO_8859_1)
+				&& !charset.equals(StandardCharsets.US_ASCII))
+		{
+			return SpamChecker.parseModel(modelPath);
+		}
+		RandomAccessFile modelFile = new RandomAccessFile(modelPath, "r");
+		try
+		{
+			FileChannel channel = modelFile.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				return SpamChecker.parseModel(modelPath);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return decode(buffer, parallelism, charset);
+		}
+		finally
+		{
+			modelFile.close();
+		}
+	}
+
+	private static ModelSnapshot decode(final ByteBuffer buffer, int parallelism, final Charset charset)
+			throws IOException
+	{
+		final int limit = buffer.limit();
+		if (limit == 0)
+		{
+			return new ModelSnapshot(null, null, 0, 0, 0, 0, new Vocabulary());
+		}
+		// the header is a single line, parsed exactly like parseModel does
+		int headerEnd          = findLineEnd(buffer, 0, limit);
+		String[] header        = decodeLine(buffer, 0, headerEnd, charset).split("\\s+");
+		String hamDatasetPath  = header[0];
+		String spamDatasetPath = header[1];
+		double hamProbability  = Double.parseDouble(header[2]);
+		double spamProbability = Double.parseDouble(header[3]);
+		int hashBuckets        = (header.length > 4) ? Integer.parseInt(header[4]) : 0;
+
+		int bodyStart    = nextLine(buffer, headerEnd, limit);
+		int chunkCount   = Math.max(1, Math.min(parallelism, (limit - bodyStart) / MIN_CHUNK_SIZE));
+		int[] boundaries = new int[chunkCount + 1];
+		boundaries[0]          = bodyStart;
+		boundaries[chunkCount] = limit;
+		for (int i = 1; i < chunkCount; ++i)
+		{
+			int nominal   = bodyStart + (int)((long)(limit - bodyStart) * i / chunkCount);
+			boundaries[i] = Math.max(boundaries[i - 1], nextLine(buffer, findLineEnd(buffer, nominal, limit), limit));
+		}
+		List<ParsedLines> chunks = new ArrayList<ParsedLines>();
+		if (chunkCount == 1)
+		{
+			chunks.add(parseLines(buffer, bodyStart, limit, charset));
+		}
+		else
+		{
+			List<Callable<ParsedLines>> tasks = new ArrayList<Callable<ParsedLines>>();
+			for (int i = 0; i < chunkCount; ++i)
+			{
+				final int start = boundaries[i];
+				final int end   = boundaries[i + 1];
+				tasks.add(new Callable<ParsedLines>()
+				{
+					@Override
+					public ParsedLines call()
+					{
+						return parseLines(buffer, start, end, charset);
+					}
+				});
+			}
+			ForkJoinPool pool = new ForkJoinPool(chunkCount);
+			try
+			{
+				for (Future<ParsedLines> future : pool.invokeAll(tasks))
+				{
+					chunks.add(future.get());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while loading " + limit + " bytes of model", e);
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException)e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+		}
+
+		int words = 0;
+		for (ParsedLines chunk : chunks)
+		{
+			words += chunk.size;
+		}
+		Vocabulary vocabulary = (hashBuckets != 0) ? new Vocabulary(new HashedTermIndex(hashBuckets), words)
+													: new Vocabulary(words);
+		for (ParsedLines chunk : chunks)
+		{
+			for (int i = 0; i < chunk.size; ++i)
+			{
+				int termStart = (i == 0) ? 0 : chunk.termEnds[i - 1];
+				int termEnd   = chunk.termEnds[i];
+				// a hashed vocabulary reads the bucket from the term string
+				int id = (hashBuckets != 0) ? vocabulary.add(new String(chunk.characters, termStart, termEnd - termStart))
+											: vocabulary.add(chunk.characters, termStart, termEnd - termStart);
+				vocabulary.addFrequencies(id, chunk.hamFrequencies[i], chunk.spamFrequencies[i]);
+				vocabulary.setConditionalProbabilities(id, chunk.hamProbabilities[i], chunk.spamProbabilities[i]);
+			}
+		}
+		// the text format has no word counts
+		return new ModelSnapshot(hamDatasetPath, spamDatasetPath, hamProbability, spamProbability, 0, 0, vocabulary);
+	}
+
+	// parses every line starting from start, inclusive, to end, exclusive, which must be a line start or the end of
+	// the buffer
+	private static ParsedLines parseLines(ByteBuffer buffer, int start, int end, Charset charset)
+	{
+		ParsedLines lines = new ParsedLines((end - start) / 32 + 1);
+		int[] fieldStarts = new int[FIELDS];
+		int[] fieldEnds   = new int[FIELDS];
+		int position      = start;
+		while (position < end)
+		{
+			int lineEnd = findLineEnd(buffer, position, end);
+			if (splitFields(buffer, position, lineEnd, fieldStarts, fieldEnds))
+			{
+				lines.add(buffer, fieldStarts[1], fieldEnds[1],
+							DecimalParser.parseInt(buffer, fieldStarts[2], fieldEnds[2]),
+							DecimalParser.parseDouble(buffer, fieldStarts[3], fieldEnds[3]),
+							DecimalParser.parseInt(buffer, fieldStarts[4], fieldEnds[4]),
+							DecimalParser.parseDouble(buffer, fieldStarts[5], fieldEnds[5]));
+			}
+			else
+			{
+				String[] wordLine = decodeLine(buffer, position, lineEnd, charset).split("\\s+");
+				lines.add(wordLine[1], Integer.parseInt(wordLine[2]), Double.parseDouble(wordLine[3]),
+							Integer.parseInt(wordLine[4]), Double.parseDouble(wordLine[5]));
+			}
+			position = nextLine(buffer, lineEnd, end);
+		}
+		return lines;
+	}
+
+	// finds the first FIELDS whitespace separated fields of a line. returns false, leaving the line to be decoded
+	// and split as a string, if the line is not plain ASCII, starts with whitespace or has fewer fields
+	private static boolean splitFields(ByteBuffer buffer, int start, int end, int[] fieldStarts, int[] fieldEnds)
+	{
+		if (start < end && DocumentTokenizer.isWhitespace((char)buffer.get(start)))
+		{
+			return false;
+		}
+		int position = start;
+		int field    = 0;
+		while (position < end && field < FIELDS)
+		{
+			fieldStarts[field] = position;
+			byte character;
+			while (position < end && !DocumentTokenizer.isWhitespace((char)(character = buffer.get(position))))
+			{
+				if (character < 0)
+				{
+					return false;
+				}
+				++position;
+			}
+			fieldEnds[field++] = position;
+			while (position < end && DocumentTokenizer.isWhitespace((char)buffer.get(position)))
+			{
+				++position;
+			}
+		}
+		return field == FIELDS;
+	}
+
+	// the position of the '\n' or '\r' ending the line at the specified position, or end
+	private static int findLineEnd(ByteBuffer buffer, int position, int end)
+	{
+		while (position < end)
+		{
+			byte character = buffer.get(position);
+			if (character == '\n' || character == '\r')
+			{
+				return position;
+			}
+			++position;
+		}
+		return end;
+	}
+
+	// the start of the line after the line ending at the specified position, treating "\r\n" as a single line end
+	// like BufferedReader.readLine
+	private static int nextLine(ByteBuffer buffer, int lineEnd, int end)
+	{
+		if (lineEnd >= end)
+		{
+			return end;
+		}
+		if (buffer.get(lineEnd) == '\r' && lineEnd + 1 < buffer.limit() && buffer.get(lineEnd + 1) == '\n')
+		{
+			return lineEnd + 2;
+		}
+		return lineEnd + 1;
+	}
+
+	private static String decodeLine(ByteBuffer buffer, int start, int end, Charset charset)
+	{
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; ++i)
+		{
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, charset);
+	}
+
+	// the words of a chunk of lines and their values, in parallel arrays. the characters of every word are
+	// appended to characters, word i ending at termEnds[i]
+	private static class ParsedLines
+	{
+		private char[] characters;
+		private int[] termEnds;
+		private int[] hamFrequencies;
+		private int[] spamFrequencies;
+		private double[] hamProbabilities;
+		private double[] spamProbabilities;
+		private int size;
+		private int characterCount;
+
+		public ParsedLines(int expectedSize)
+		{
+			this.characters        = new char[expectedSize * 8];
+			this.termEnds          = new int[expectedSize];
+			this.hamFrequencies    = new int[expectedSize];
+			this.spamFrequencies   = new int[expectedSize];
+			this.hamProbabilities  = new double[expectedSize];
+			this.spamProbabilities = new double[expectedSize];
+			this.size              = 0;
+			this.characterCount    = 0;
+		}
+
+		// adds the word in the ASCII bytes of the specified buffer from start to end
+		public void add(ByteBuffer buffer, int start, int end, int hamFrequency, double hamProbability,
+				int spamFrequency, double spamProbability)
+		{
+			ensureCharacterCapacity(end - start);
+			for (int i = start; i < end; ++i)
+			{
+				characters[characterCount++] = (char)buffer.get(i);
+			}
+			addValues(hamFrequency, hamProbability, spamFrequency, spamProbability);
+		}
+
+		public void add(String word, int hamFrequency, double hamProbability, int spamFrequency,
+				double spamProbability)
+		{
+			ensureCharacterCapacity(word.length());
+			word.getChars(0, word.length(), characters, characterCount);
+			characterCount += word.length();
+			addValues(hamFrequency, hamProbability, spamFrequency, spamProbability);
+		}
+
+		private void ensureCharacterCapacity(int length)
+		{
+			if (characterCount + length > characters.length)
+			{
+				characters = Arrays.copyOf(characters, Math.max(characters.length * 2, characterCount + length));
+			}
+		}
+
+		private void addValues(int hamFrequency, double hamProbability, int spamFrequency, double spamProbability)
+		{
+			if (size == termEnds.length)
+			{
+				int capacity      = size * 2;
+				termEnds          = Arrays.copyOf(termEnds, capacity);
+				hamFrequencies    = Arrays.copyOf(hamFrequencies, capacity);
+				spamFrequencies   = Arrays.copyOf(spamFrequencies, capacity);
+				hamProbabilities  = Arrays.copyOf(hamProbabilities, capacity);
+				spamProbabilities = Arrays.copyOf(spamProbabilities, capacity);
+			}
+			termEnds[size]          = characterCount;
+			hamFrequencies[size]    = hamFrequency;
+			hamProbabilities[size]  = hamProbability;
+			spamFrequencies[size]   = spamFrequency;
+			spamProbabilities[size] = spamProbability;
+			++size;
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package spamfilter;
+
+// receives the tokens found by a DocumentTokenizer
+public interface TokenSink
+{
+	// called once for every token in document order. the characters are only valid until this method returns
+	void acceptToken(char[] characters, int offset, int length);
+}
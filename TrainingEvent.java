@@ -0,0 +1,31 @@
+package spamfilter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JDK Flight Recorder event covering the filtering and counting of the dataset documents when a SpamChecker is
+// trained
+@Name("spamfilter.Training")
+@Label("Training")
+@Category("Spam Filter")
+@Description("Filtering the dataset documents and counting their words")
+public class TrainingEvent extends Event
+{
+	@Label("Ham Dataset Path")
+	String hamDatasetPath;
+
+	@Label("Spam Dataset Path")
+	String spamDatasetPath;
+
+	@Label("Parallelism")
+	int parallelism;
+
+	@Label("Documents")
+	int documents;
+
+	@Label("Distinct Words")
+	int distinctWords;
+}
@@ -0,0 +1,85 @@
+package spamfilter;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// the Vector API scoring of BatchScorer, only loaded when the jdk.incubator.vector module is available. documents
+// are sorted by length and scored a group of as many documents as a vector has lanes at a time: the ids of the
+// group are transposed a chunk of token positions at a time so that the ids at a position of every document are
+// contiguous, then the log probabilities at every position are gathered and added to the scores lane by lane.
+// each lane thus adds the log probabilities of its document in token order, and shorter documents are padded with
+// the id of a 0, whose addition leaves any score but -0 unchanged, which a sum of log probabilities is never
+class VectorBatchScorer
+{
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final int CHUNK_POSITIONS = 256;
+
+	static void score(double[] hamLogProbabilities, double[] spamLogProbabilities, double hamPriorScore,
+			double spamPriorScore, int[][] documents, double[] hamScores, double[] spamScores)
+	{
+		int lanes          = SPECIES.length();
+		int paddingId      = hamLogProbabilities.length - 1;
+		int[] order        = sortByLength(documents);
+		int[] chunkIds     = new int[CHUNK_POSITIONS * lanes];
+		double[] hamLanes  = new double[lanes];
+		double[] spamLanes = new double[lanes];
+		for (int groupStart = 0; groupStart < order.length; groupStart += lanes)
+		{
+			int groupSize     = Math.min(lanes, order.length - groupStart);
+			int maxLength     = documents[order[groupStart + groupSize - 1]].length;
+			DoubleVector ham  = DoubleVector.broadcast(SPECIES, hamPriorScore);
+			DoubleVector spam = DoubleVector.broadcast(SPECIES, spamPriorScore);
+			for (int chunkStart = 0; chunkStart < maxLength; chunkStart += CHUNK_POSITIONS)
+			{
+				int chunkLength = Math.min(CHUNK_POSITIONS, maxLength - chunkStart);
+				for (int lane = 0; lane < lanes; ++lane)
+				{
+					// the positions of the chunk the document has tokens at, the others being padded
+					int[] document = (lane < groupSize) ? documents[order[groupStart + lane]] : null;
+					int length     = (document == null) ? 0
+															: Math.max(0, Math.min(chunkLength, document.length - chunkStart));
+					for (int position = 0; position < length; ++position)
+					{
+						chunkIds[position * lanes + lane] = document[chunkStart + position];
+					}
+					for (int position = length; position < chunkLength; ++position)
+					{
+						chunkIds[position * lanes + lane] = paddingId;
+					}
+				}
+				for (int position = 0; position < chunkLength; ++position)
+				{
+					int idsOffset = position * lanes;
+					ham  = ham.add(DoubleVector.fromArray(SPECIES, hamLogProbabilities, 0, chunkIds, idsOffset));
+					spam = spam.add(DoubleVector.fromArray(SPECIES, spamLogProbabilities, 0, chunkIds, idsOffset));
+				}
+			}
+			ham.intoArray(hamLanes, 0);
+			spam.intoArray(spamLanes, 0);
+			for (int lane = 0; lane < groupSize; ++lane)
+			{
+				hamScores[order[groupStart + lane]]  = hamLanes[lane];
+				spamScores[order[groupStart + lane]] = spamLanes[lane];
+			}
+		}
+	}
+
+	// the indexes of the specified documents from the shortest document to the longest
+	private static int[] sortByLength(int[][] documents)
+	{
+		long[] keys = new long[documents.length];
+		for (int i = 0; i < documents.length; ++i)
+		{
+			keys[i] = ((long)documents[i].length << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[documents.length];
+		for (int i = 0; i < order.length; ++i)
+		{
+			order[i] = (int)keys[i];
+		}
+		return order;
+	}
+}
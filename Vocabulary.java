@@ -0,0 +1,355 @@
+package spamfilter;
+
+import java.util.Arrays;
+
+// the words known to a SpamChecker or a CategoryClassifier. every word is given a dense id by a TermIndex and
+// its frequencies, conditional probabilities and their log10 in every class of document are held in primitive
+// arrays, one per class, indexed by that id. a SpamChecker vocabulary has the two classes HAM_CLASS and
+// SPAM_CLASS, which the ham and spam accessors stand for. probabilities that have not been computed yet are NaN.
+// the index is a TermDictionary of the words themselves unless the vocabulary is hashed, see HashedTermIndex
+public class Vocabulary
+{
+	public static final int HAM_CLASS = 0;
+	public static final int SPAM_CLASS = 1;
+	private TermIndex words;
+	private int[][] frequencies;						// [class][id]
+	private double[][] conditionalProbabilities;
+	private double[][] logProbabilities;
+
+	public Vocabulary()
+	{
+		this(16);
+	}
+
+	public Vocabulary(int expectedSize)
+	{
+		this(new TermDictionary(expectedSize), expectedSize);
+	}
+
+	// a ham and spam vocabulary of the words in the specified empty index
+	public Vocabulary(TermIndex words, int expectedSize)
+	{
+		this(words, 2, expectedSize);
+	}
+
+	// a vocabulary of the words in the specified empty index with the specified number of classes
+	public Vocabulary(TermIndex words, int classCount, int expectedSize)
+	{
+		if (classCount < 2)
+		{
+			throw new IllegalArgumentException("A vocabulary needs at least 2 classes: " + classCount);
+		}
+		int capacity                  = Math.max(expectedSize, 16);
+		this.words                    = words;
+		this.frequencies              = new int[classCount][capacity];
+		this.conditionalProbabilities = new double[classCount][];
+		this.logProbabilities         = new double[classCount][];
+		for (int classIndex = 0; classIndex < classCount; ++classIndex)
+		{
+			conditionalProbabilities[classIndex] = newProbabilityArray(capacity);
+			logProbabilities[classIndex]         = newProbabilityArray(capacity);
+		}
+	}
+
+	// a vocabulary of the words in the specified index over the specified arrays, indexed by class and then by id
+	// like getLogProbabilities, which BinaryModelFormat reads back from a model file instead of adding every word
+	// again. the arrays are not copied
+	Vocabulary(TermIndex words, int[][] frequencies, double[][] conditionalProbabilities, double[][] logProbabilities)
+	{
+		this.words                    = words;
+		this.frequencies              = frequencies;
+		this.conditionalProbabilities = conditionalProbabilities;
+		this.logProbabilities         = logProbabilities;
+	}
+
+	public int getClassCount()
+	{
+		return frequencies.length;
+	}
+
+	public int size()
+	{
+		return words.size();
+	}
+
+	public TermIndex getWords()
+	{
+		return words;
+	}
+
+	// the number of buckets the words are hashed into, or 0 if the vocabulary holds the words themselves
+	public int getHashBuckets()
+	{
+		return (words instanceof HashedTermIndex) ? ((HashedTermIndex)words).getBucketCount() : 0;
+	}
+
+	// returns the id of the specified word or -1 if it is not in the vocabulary
+	public int find(char[] characters, int offset, int length)
+	{
+		return words.find(characters, offset, length);
+	}
+
+	// returns the id of the specified word or -1 if it is not in the vocabulary
+	public int find(CharSequence word)
+	{
+		return words.find(word);
+	}
+
+	// returns the id of the word with the specified id in another vocabulary of the same kind, or -1 if it is not
+	// in this one
+	public int find(Vocabulary other, int otherId)
+	{
+		return words.find(other.words, otherId);
+	}
+
+	// returns the id of the specified word, adding it with no frequencies if it is not in the vocabulary
+	public int add(char[] characters, int offset, int length)
+	{
+		int id = words.add(characters, offset, length);
+		ensureCapacity(id + 1);
+		return id;
+	}
+
+	// same as add above for a word whose TermDictionary hash was already computed, which a vocabulary of words
+	// then does not compute again
+	public int add(char[] characters, int offset, int length, int termHash)
+	{
+		int id = (words instanceof TermDictionary) ? ((TermDictionary)words).add(characters, offset, length, termHash)
+													: words.add(characters, offset, length);
+		ensureCapacity(id + 1);
+		return id;
+	}
+
+	// adds a word as returned by getWord
+	public int add(String word)
+	{
+		int id = words.add(word);
+		ensureCapacity(id + 1);
+		return id;
+	}
+
+	// adds the word with the specified id in another vocabulary to this one and returns its id in this one
+	public int add(Vocabulary other, int otherId)
+	{
+		int id = words.add(other.words, otherId);
+		ensureCapacity(id + 1);
+		return id;
+	}
+
+	public String getWord(int id)
+	{
+		return words.getTerm(id);
+	}
+
+	public int getFrequency(int classIndex, int id)
+	{
+		return frequencies[classIndex][id];
+	}
+
+	public double getConditionalProbability(int classIndex, int id)
+	{
+		return conditionalProbabilities[classIndex][id];
+	}
+
+	public double getLogProbability(int classIndex, int id)
+	{
+		return logProbabilities[classIndex][id];
+	}
+
+	public void addFrequency(int classIndex, int id, int frequency)
+	{
+		frequencies[classIndex][id] += frequency;
+	}
+
+	// sets the conditional probability of a word given a class along with its log10
+	public void setConditionalProbability(int classIndex, int id, double conditionalProbability)
+	{
+		conditionalProbabilities[classIndex][id] = conditionalProbability;
+		logProbabilities[classIndex][id]         = Math.log10(conditionalProbability);
+	}
+
+	// the log10 conditional probabilities of every class, indexed by class and then by id, for scoring every class
+	// in a single pass. the arrays are replaced when the vocabulary grows, so they are only meant to be taken from
+	// a vocabulary that is done changing
+	double[][] getLogProbabilities()
+	{
+		return logProbabilities;
+	}
+
+	public int getHamFrequency(int id)
+	{
+		return frequencies[HAM_CLASS][id];
+	}
+
+	public int getSpamFrequency(int id)
+	{
+		return frequencies[SPAM_CLASS][id];
+	}
+
+	public double getHamConditionalProbability(int id)
+	{
+		return conditionalProbabilities[HAM_CLASS][id];
+	}
+
+	public double getSpamConditionalProbability(int id)
+	{
+		return conditionalProbabilities[SPAM_CLASS][id];
+	}
+
+	public double getHamLogProbability(int id)
+	{
+		return logProbabilities[HAM_CLASS][id];
+	}
+
+	public double getSpamLogProbability(int id)
+	{
+		return logProbabilities[SPAM_CLASS][id];
+	}
+
+	public void incrementHam(int id)
+	{
+		++frequencies[HAM_CLASS][id];
+	}
+
+	public void incrementSpam(int id)
+	{
+		++frequencies[SPAM_CLASS][id];
+	}
+
+	public void addFrequencies(int id, int hamFrequency, int spamFrequency)
+	{
+		frequencies[HAM_CLASS][id]  += hamFrequency;
+		frequencies[SPAM_CLASS][id] += spamFrequency;
+	}
+
+	// sets both conditional probabilities of a word along with their log10
+	public void setConditionalProbabilities(int id, double hamConditionalProbability, double spamConditionalProbability)
+	{
+		setConditionalProbability(HAM_CLASS, id, hamConditionalProbability);
+		setConditionalProbability(SPAM_CLASS, id, spamConditionalProbability);
+	}
+
+	// returns a QuantifiedWord holding a copy of the values of the word with the specified id
+	public QuantifiedWord getQuantifiedWord(int id)
+	{
+		return new QuantifiedWord(getWord(id), getHamFrequency(id), nullIfNaN(getHamConditionalProbability(id)),
+									getSpamFrequency(id), nullIfNaN(getSpamConditionalProbability(id)));
+	}
+
+	// returns the id of every word sorted alphabetically, or by bucket for a hashed vocabulary
+	public int[] getSortedIds()
+	{
+		return words.getSortedIds();
+	}
+
+	// the sum of the frequencies of every word in the specified class
+	public long getTotalFrequency(int classIndex)
+	{
+		int[] classFrequencies = frequencies[classIndex];
+		long total             = 0;
+		for (int id = 0; id < size(); ++id)
+		{
+			total += classFrequencies[id];
+		}
+		return total;
+	}
+
+	// the sum of the ham frequencies of every word
+	public long getTotalHamFrequency()
+	{
+		return getTotalFrequency(HAM_CLASS);
+	}
+
+	// the sum of the spam frequencies of every word
+	public long getTotalSpamFrequency()
+	{
+		return getTotalFrequency(SPAM_CLASS);
+	}
+
+	// returns a new vocabulary holding the words with the specified ids in that order, along with their
+	// frequencies and probabilities
+	public Vocabulary withWords(int[] ids)
+	{
+		Vocabulary returnVocabulary = new Vocabulary(words.newIndex(ids.length), getClassCount(), ids.length);
+		for (int id : ids)
+		{
+			returnVocabulary.copyWord(this, id);
+		}
+		return returnVocabulary;
+	}
+
+	// returns a new vocabulary holding only the words that appear at least the specified number of times in
+	// documents of some class, in the same order
+	public Vocabulary withoutRareWords(int minFrequency)
+	{
+		Vocabulary returnVocabulary = new Vocabulary(words.newIndex(size()), getClassCount(), size());
+		for (int id = 0; id < size(); ++id)
+		{
+			if (isFrequent(id, minFrequency))
+			{
+				returnVocabulary.copyWord(this, id);
+			}
+		}
+		return returnVocabulary;
+	}
+
+	// whether the word with the specified id appears at least the specified number of times in some class
+	private boolean isFrequent(int id, int minFrequency)
+	{
+		for (int[] classFrequencies : frequencies)
+		{
+			if (classFrequencies[id] >= minFrequency)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// adds the word with the specified id in another vocabulary with the same classes along with its frequencies
+	// and probabilities
+	private void copyWord(Vocabulary other, int otherId)
+	{
+		int id = add(other, otherId);
+		for (int classIndex = 0; classIndex < frequencies.length; ++classIndex)
+		{
+			frequencies[classIndex][id]              += other.frequencies[classIndex][otherId];
+			conditionalProbabilities[classIndex][id]  = other.conditionalProbabilities[classIndex][otherId];
+			logProbabilities[classIndex][id]          = other.logProbabilities[classIndex][otherId];
+		}
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > frequencies[0].length)
+		{
+			int newCapacity = Math.max(capacity, frequencies[0].length * 2);
+			for (int classIndex = 0; classIndex < frequencies.length; ++classIndex)
+			{
+				frequencies[classIndex]              = Arrays.copyOf(frequencies[classIndex], newCapacity);
+				conditionalProbabilities[classIndex] = growProbabilityArray(conditionalProbabilities[classIndex],
+																			newCapacity);
+				logProbabilities[classIndex]         = growProbabilityArray(logProbabilities[classIndex], newCapacity);
+			}
+		}
+	}
+
+	private static double[] newProbabilityArray(int capacity)
+	{
+		double[] returnArray = new double[capacity];
+		Arrays.fill(returnArray, Double.NaN);
+		return returnArray;
+	}
+
+	private static double[] growProbabilityArray(double[] array, int capacity)
+	{
+		double[] returnArray = Arrays.copyOf(array, capacity);
+		Arrays.fill(returnArray, array.length, capacity, Double.NaN);
+		return returnArray;
+	}
+
+	private static Double nullIfNaN(double probability)
+	{
+		return Double.isNaN(probability) ? null : probability;
+	}
+}
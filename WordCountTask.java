@@ -0,0 +1,73 @@
+package spamfilter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.RecursiveTask;
+
+import spamfilter.FilteredDocument.DocumentType;
+
+// fork/join task that streams a range of corpus messages, see MailCorpus, and counts their words into partial
+// WordCounts which are merged as the subtasks complete. every partial count filters words with a copy of the
+// same compiled WordFilter, so the stop words are only compiled once however many subtasks there are. a message
+// that cannot be read fails the task with an UncheckedIOException, which invoke and join throw again, rather
+// than being left out of the counts
+public class WordCountTask extends RecursiveTask<WordCounts>
+{
+	private static final long serialVersionUID = 1L;
+	private static final int DOCUMENTS_PER_TASK = 16;
+	private MailMessage[] messages;
+	private int start;
+	private int end;
+	private DocumentType documentType;
+	private WordFilter filter;
+	private int hashBuckets;
+	private boolean bigrams;
+
+	// hashBuckets and bigrams are passed on to the WordCounts
+	public WordCountTask(MailMessage[] messages, int start, int end, DocumentType documentType, WordFilter filter,
+			int hashBuckets, boolean bigrams)
+	{
+		this.messages     = messages;
+		this.start        = start;
+		this.end          = end;
+		this.documentType = documentType;
+		this.filter       = filter;
+		this.hashBuckets  = hashBuckets;
+		this.bigrams      = bigrams;
+	}
+
+	@Override
+	protected WordCounts compute()
+	{
+		if (end - start <= DOCUMENTS_PER_TASK)
+		{
+			WordCounts counts = new WordCounts(hashBuckets, bigrams, filter);
+			for (int i = start; i < end; ++i)
+			{
+				try
+				{
+					counts.addDocument(messages[i], documentType, filter.getStopWords());
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+			return counts;
+		}
+		int middle = (start + end) >>> 1;
+		WordCountTask left  = new WordCountTask(messages, start, middle, documentType, filter, hashBuckets, bigrams);
+		WordCountTask right = new WordCountTask(messages, middle, end, documentType, filter, hashBuckets, bigrams);
+		left.fork();
+		WordCounts rightCounts = right.compute();
+		WordCounts leftCounts  = left.join();
+		// merge the smaller map into the larger one
+		if (leftCounts.getWords().size() >= rightCounts.getWords().size())
+		{
+			leftCounts.merge(rightCounts);
+			return leftCounts;
+		}
+		rightCounts.merge(leftCounts);
+		return rightCounts;
+	}
+}
@@ -0,0 +1,369 @@
+package spamfilter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import spamfilter.FilteredDocument.DocumentType;
+
+// raw ham and spam frequencies of every acceptable word seen in training documents. along with the totals over
+// all words, the totals over the words that make it into the vocabulary (see isInVocabulary) are kept up to date
+// on every change, so the conditional probability of any word can be derived at any time without a pass over
+// all the words. bigrams of words following each other in a document can be counted as well, keyed by the ids of
+// their words in the counted words
+public class WordCounts
+{
+	private Vocabulary words;
+	private BigramTable bigrams;		// null unless bigrams are counted
+	private int hamWordCount;
+	private int spamWordCount;
+	private int vocabularySize;
+	private int vocabularyHamWordCount;
+	private int vocabularySpamWordCount;
+	private char[] wordBuffer;			// copy of the filtered word being counted
+	private WordFilter filter;			// compiled for the stop words of the last document counted
+	private int previousId;				// id of the previous token of the document if it was counted, otherwise -1
+	private DocumentTokenizer tokenizer;
+
+	public WordCounts()
+	{
+		this(0);
+	}
+
+	// counts that hash the words into the specified number of buckets instead of keeping them, see
+	// HashedTermIndex. 0 keeps the words
+	public WordCounts(int hashBuckets)
+	{
+		this(hashBuckets, false);
+	}
+
+	// same as the constructor above but also counting the bigrams of acceptable words following each other if
+	// bigrams is set. any token that is not an acceptable word breaks a bigram
+	public WordCounts(int hashBuckets, boolean bigrams)
+	{
+		this.words                   = (hashBuckets == 0) ? new Vocabulary()
+														: new Vocabulary(new HashedTermIndex(hashBuckets), 16);
+		this.bigrams                 = bigrams ? new BigramTable() : null;
+		this.hamWordCount            = 0;
+		this.spamWordCount           = 0;
+		this.vocabularySize          = 0;
+		this.vocabularyHamWordCount  = 0;
+		this.vocabularySpamWordCount = 0;
+		this.wordBuffer              = new char[32];
+		this.previousId              = -1;
+		this.tokenizer               = new DocumentTokenizer();
+	}
+
+	// same as the constructor above for documents counted with the stop words of the specified filter, which is
+	// compiled already and is copied rather than compiled again, see WordFilter.copy
+	public WordCounts(int hashBuckets, boolean bigrams, WordFilter filter)
+	{
+		this(hashBuckets, bigrams);
+		this.filter = filter.copy();
+	}
+
+	// the counted words. words whose frequencies dropped back to 0 keep their id
+	public Vocabulary getWords()
+	{
+		return words;
+	}
+
+	// the counted bigrams, keyed by the ids of getWords, or null unless bigrams are counted
+	public BigramTable getBigrams()
+	{
+		return bigrams;
+	}
+
+	public int getHamWordCount()
+	{
+		return hamWordCount;
+	}
+
+	public int getSpamWordCount()
+	{
+		return spamWordCount;
+	}
+
+	// the number of words for which isInVocabulary is true
+	public int getVocabularySize()
+	{
+		return vocabularySize;
+	}
+
+	// the sum of the ham frequencies of the words for which isInVocabulary is true
+	public int getVocabularyHamWordCount()
+	{
+		return vocabularyHamWordCount;
+	}
+
+	// the sum of the spam frequencies of the words for which isInVocabulary is true
+	public int getVocabularySpamWordCount()
+	{
+		return vocabularySpamWordCount;
+	}
+
+	// words that appear 0 or 1 times in either class of document (spam/ham) are left out of the vocabulary
+	public boolean isInVocabulary(int id)
+	{
+		return words.getHamFrequency(id) >= SpamChecker.MIN_WORD_FREQUENCY ||
+				words.getSpamFrequency(id) >= SpamChecker.MIN_WORD_FREQUENCY;
+	}
+
+	// count every acceptable word of the specified document towards the specified document type
+	public void addDocument(FilteredDocument document, DocumentType documentType, TermDictionary stopWords)
+	{
+		countDocument(document, documentType, stopWords, 1);
+	}
+
+	// undo a previous addDocument call for the same document and document type
+	public void removeDocument(FilteredDocument document, DocumentType documentType, TermDictionary stopWords)
+	{
+		countDocument(document, documentType, stopWords, -1);
+	}
+
+	// count every acceptable word of the document file at the specified path towards the specified document type.
+	// the file is tokenized as it is read, so nothing of it is kept once it is counted. returns the number of
+	// tokens counted, acceptable or not
+	public int addDocument(String documentPath, DocumentType documentType, TermDictionary stopWords)
+			throws IOException
+	{
+		return countDocument(documentPath, documentType, stopWords, 1);
+	}
+
+	// undo a previous addDocument call for the same document file and document type
+	public int removeDocument(String documentPath, DocumentType documentType, TermDictionary stopWords)
+			throws IOException
+	{
+		return countDocument(documentPath, documentType, stopWords, -1);
+	}
+
+	// count every acceptable word of the document read from the specified reader, which is not closed
+	public int addDocument(Reader reader, DocumentType documentType, TermDictionary stopWords) throws IOException
+	{
+		return countDocument(reader, documentType, stopWords, 1);
+	}
+
+	// undo a previous addDocument call for the same document contents and document type
+	public int removeDocument(Reader reader, DocumentType documentType, TermDictionary stopWords) throws IOException
+	{
+		return countDocument(reader, documentType, stopWords, -1);
+	}
+
+	// count every acceptable word of the specified corpus message towards the specified document type. a message in
+	// its own file is streamed like a document file, one inside an mbox file is decoded from its mapped bytes
+	public int addDocument(MailMessage message, DocumentType documentType, TermDictionary stopWords)
+			throws IOException
+	{
+		return countDocument(message, documentType, stopWords, 1);
+	}
+
+	// undo a previous addDocument call for the same message and document type
+	public int removeDocument(MailMessage message, DocumentType documentType, TermDictionary stopWords)
+			throws IOException
+	{
+		return countDocument(message, documentType, stopWords, -1);
+	}
+
+	// add the frequencies and word counts of the specified partial counts to the ones of this object. bigrams are
+	// only merged if both count them
+	public void merge(WordCounts other)
+	{
+		addCounts(other, 1);
+	}
+
+	// add the specified frequencies to those of the specified word, which must be acceptable or, for hashed counts,
+	// the term of a bucket
+	void addWord(String word, int hamFrequency, int spamFrequency)
+	{
+		addFrequencies(words.add(word), hamFrequency, spamFrequency);
+	}
+
+	// undo a previous merge of the specified partial counts, leaving the counts of the documents they hold out
+	public void subtract(WordCounts other)
+	{
+		addCounts(other, -1);
+	}
+
+	// returns independent counts equal to these ones
+	public WordCounts copy()
+	{
+		WordCounts copy = new WordCounts(words.getHashBuckets(), bigrams != null);
+		copy.merge(this);
+		return copy;
+	}
+
+	// adds sign times the frequencies of the specified counts. the bigrams of the other counts are keyed by the ids
+	// of its words, so they are moved to the ids of the same words here
+	private void addCounts(WordCounts other, int sign)
+	{
+		int[] ids = new int[other.words.size()];
+		for (int otherId = 0; otherId < other.words.size(); ++otherId)
+		{
+			ids[otherId] = words.add(other.words, otherId);
+			addFrequencies(ids[otherId], sign * other.words.getHamFrequency(otherId),
+							sign * other.words.getSpamFrequency(otherId));
+		}
+		if (bigrams != null && other.bigrams != null)
+		{
+			for (int otherIndex = 0; otherIndex < other.bigrams.size(); ++otherIndex)
+			{
+				long otherKey = other.bigrams.getKey(otherIndex);
+				int index     = bigrams.add(BigramTable.key(ids[BigramTable.getFirstId(otherKey)],
+															ids[BigramTable.getSecondId(otherKey)]));
+				bigrams.addFrequencies(index, sign * other.bigrams.getHamFrequency(otherIndex),
+										sign * other.bigrams.getSpamFrequency(otherIndex));
+			}
+		}
+	}
+
+	private void countDocument(FilteredDocument document, DocumentType documentType, TermDictionary stopWords,
+			int increment)
+	{
+		WordFilter documentFilter = getFilter(stopWords);
+		previousId                = -1;
+		for (String currentWord : document.getFilteredWords())
+		{
+			if (currentWord.length() > wordBuffer.length)
+			{
+				wordBuffer = Arrays.copyOf(wordBuffer, currentWord.length());
+			}
+			currentWord.getChars(0, currentWord.length(), wordBuffer, 0);
+			countWord(documentFilter, wordBuffer, 0, currentWord.length(), documentType, increment);
+		}
+	}
+
+	// the file is decoded with the default charset, like FilteredDocument does
+	private int countDocument(String documentPath, DocumentType documentType, TermDictionary stopWords, int increment)
+			throws IOException
+	{
+		DocumentFilterEvent event = new DocumentFilterEvent();
+		event.begin();
+		long startTime    = SpamFilterMetrics.startTime();
+		InputStream input = new FileInputStream(documentPath);
+		int tokens;
+		try
+		{
+			tokens = countDocument(new InputStreamReader(input, Charset.defaultCharset()), documentType, stopWords,
+									increment);
+		}
+		finally
+		{
+			input.close();
+		}
+		recordDocument(event, startTime, documentPath, (int)tokenizer.getCharactersDone(), tokens);
+		return tokens;
+	}
+
+	// the message is decoded with the default charset, like a document file
+	private int countDocument(MailMessage message, DocumentType documentType, TermDictionary stopWords, int increment)
+			throws IOException
+	{
+		if (message.getPath() != null)
+		{
+			return countDocument(message.getName(), documentType, stopWords, increment);
+		}
+		DocumentFilterEvent event = new DocumentFilterEvent();
+		event.begin();
+		long startTime      = SpamFilterMetrics.startTime();
+		CharBuffer contents = Charset.defaultCharset().decode(message.getContents());
+		int[] tokens        = new int[1];
+		tokenizer.tokenize(contents, newCountingSink(documentType, stopWords, increment, tokens));
+		recordDocument(event, startTime, message.getName(), contents.length(), tokens[0]);
+		return tokens[0];
+	}
+
+	private int countDocument(Reader reader, DocumentType documentType, TermDictionary stopWords, int increment)
+			throws IOException
+	{
+		int[] tokens = new int[1];
+		tokenizer.tokenize(reader, newCountingSink(documentType, stopWords, increment, tokens));
+		return tokens[0];
+	}
+
+	private void recordDocument(DocumentFilterEvent event, long startTime, String documentPath, int characters,
+			int tokens)
+	{
+		SpamFilterMetrics.recordDocumentTokenization(startTime, tokens);
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.documentPath = documentPath;
+			event.characters   = characters;
+			event.tokens       = tokens;
+			event.commit();
+		}
+	}
+
+	// a sink counting every token it is handed with countWord, and the tokens in tokens[0]
+	private TokenSink newCountingSink(final DocumentType documentType, final TermDictionary stopWords,
+			final int increment, final int[] tokens)
+	{
+		final WordFilter documentFilter = getFilter(stopWords);
+		previousId                      = -1;
+		return new TokenSink()
+		{
+			@Override
+			public void acceptToken(char[] characters, int offset, int length)
+			{
+				countWord(documentFilter, characters, offset, length, documentType, increment);
+				++tokens[0];
+			}
+		};
+	}
+
+	// the filter of the specified stop words, compiled again only when they are not those of the last document
+	private WordFilter getFilter(TermDictionary stopWords)
+	{
+		if (filter == null || filter.getStopWords() != stopWords)
+		{
+			filter = new WordFilter(stopWords);
+		}
+		return filter;
+	}
+
+	// counts the word in the specified range if the filter accepts it, along with its bigram with the previous
+	// token if both are counted. the filter lowercases and hashes the word in the pass that accepts it, so a word
+	// that is already known is counted without copying it, hashing it again or creating a string
+	private void countWord(WordFilter documentFilter, char[] characters, int offset, int length,
+			DocumentType documentType, int increment)
+	{
+		if (!documentFilter.accept(characters, offset, length))
+		{
+			previousId = -1;
+			return;
+		}
+		int id            = words.add(documentFilter.getWord(), 0, length, documentFilter.getHash());
+		int hamIncrement  = (documentType == DocumentType.HAM) ? increment : 0;
+		int spamIncrement = increment - hamIncrement;
+		addFrequencies(id, hamIncrement, spamIncrement);
+		if (bigrams != null && previousId != -1)
+		{
+			bigrams.addFrequencies(bigrams.add(BigramTable.key(previousId, id)), hamIncrement, spamIncrement);
+		}
+		previousId = id;
+	}
+
+	private void addFrequencies(int id, int hamFrequency, int spamFrequency)
+	{
+		if (isInVocabulary(id))
+		{
+			--this.vocabularySize;
+			this.vocabularyHamWordCount  -= words.getHamFrequency(id);
+			this.vocabularySpamWordCount -= words.getSpamFrequency(id);
+		}
+		words.addFrequencies(id, hamFrequency, spamFrequency);
+		this.hamWordCount  += hamFrequency;
+		this.spamWordCount += spamFrequency;
+		if (isInVocabulary(id))
+		{
+			++this.vocabularySize;
+			this.vocabularyHamWordCount  += words.getHamFrequency(id);
+			this.vocabularySpamWordCount += words.getSpamFrequency(id);
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package spamfilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// the test deciding which tokens are vocabulary words, compiled for a set of stop words. a token is accepted if it
+// is between MIN_WORD_LENGTH and MAX_WORD_LENGTH characters long, only holds letters and hyphens ('-'), is not a
+// single character repeated and, once lowercased, is not a stop word. accept checks all of these in a single pass
+// over the token that also lowercases it into the buffer of the filter and computes its TermDictionary hash, so
+// an accepted word goes straight to Vocabulary.add without being copied or hashed again. the stop words are
+// looked up in a perfect hash table built once by hash and displace: the stop words are grouped in
+// buckets by their hash and every bucket is given the displacement that sends its words to free slots, so a
+// lookup is a single slot compared with the word, allocating nothing. an instance is not thread safe, as it
+// lowercases into its own buffer, but copy gives another thread a filter sharing the compiled table
+public class WordFilter
+{
+	private static final int MAX_DISPLACEMENT = 1 << 16;		// tried for a bucket before giving up on the table
+	private static final int MAX_LOAD_FACTOR_INVERSE = 16;		// most slots per stop word before giving up
+	private final TermDictionary stopWords;
+	private final int[] displacements;							// of every bucket, null if no table was built
+	private final int[] slotHashes;
+	private final char[][] slotWords;							// the stop word in every slot, null for a free slot
+	private final char[] word;									// lowercase copy of the last accepted token
+	private int hash;
+
+	public WordFilter(TermDictionary stopWords)
+	{
+		this.stopWords = stopWords;
+		this.word      = new char[SpamChecker.MAX_WORD_LENGTH];
+
+		// stop words that are not made of lowercase letters and hyphens of an acceptable length can never match an
+		// accepted token
+		ArrayList<char[]> candidates = new ArrayList<char[]>();
+		for (int id = 0; id < stopWords.size(); ++id)
+		{
+			char[] stopWord = stopWords.getTerm(id).toCharArray();
+			if (isLowercaseWord(stopWord))
+			{
+				candidates.add(stopWord);
+			}
+		}
+		int tableSize = Integer.highestOneBit(Math.max(2, candidates.size() * 2) - 1) << 1;
+		int[] table   = buildTable(candidates, tableSize);
+		while (table == null && tableSize < MAX_LOAD_FACTOR_INVERSE * Math.max(8, candidates.size()))
+		{
+			tableSize *= 2;
+			table      = buildTable(candidates, tableSize);
+		}
+		if (table == null)
+		{
+			// only happens when distinct stop words share a hash, in which case the dictionary is used as is
+			this.displacements = null;
+			this.slotHashes    = null;
+			this.slotWords     = null;
+			return;
+		}
+		this.displacements = table;
+		this.slotHashes    = new int[tableSize];
+		this.slotWords     = new char[tableSize][];
+		for (char[] stopWord : candidates)
+		{
+			int stopWordHash = TermDictionary.hash(stopWord, 0, stopWord.length);
+			int slot         = slot(stopWordHash, displacements[stopWordHash & (displacements.length - 1)], tableSize);
+			slotHashes[slot] = stopWordHash;
+			slotWords[slot]  = stopWord;
+		}
+	}
+
+	// a filter sharing the stop words and compiled table of the specified one, which are never modified, with a
+	// buffer of its own
+	private WordFilter(WordFilter other)
+	{
+		this.stopWords     = other.stopWords;
+		this.displacements = other.displacements;
+		this.slotHashes    = other.slotHashes;
+		this.slotWords     = other.slotWords;
+		this.word          = new char[SpamChecker.MAX_WORD_LENGTH];
+	}
+
+	// returns a filter of the same stop words that does not compile them again, for use on another thread
+	public WordFilter copy()
+	{
+		return new WordFilter(this);
+	}
+
+	public TermDictionary getStopWords()
+	{
+		return stopWords;
+	}
+
+	// lowercases the token in the specified range into getWord and returns whether it is a vocabulary word. a
+	// token is lowercased the way String.toLowerCase does for every token that can be accepted, the Kelvin sign
+	// being the only character other than A to Z lowercasing to a letter. getWord and getHash are only meaningful
+	// until the next call and after one that returned true
+	public boolean accept(char[] characters, int offset, int length)
+	{
+		if (length < SpamChecker.MIN_WORD_LENGTH || length > SpamChecker.MAX_WORD_LENGTH)
+		{
+			return false;
+		}
+		int polynomialHash = 0;
+		boolean repetition = true;
+		for (int i = 0; i < length; ++i)
+		{
+			char character = characters[offset + i];
+			if (character >= 'A' && character <= 'Z')
+			{
+				character += 'a' - 'A';
+			}
+			else if (character == '\u212A')
+			{
+				character = 'k';
+			}
+			else if ((character < 'a' || character > 'z') && character != '-')
+			{
+				return false;
+			}
+			word[i]        = character;
+			repetition    &= character == word[0];
+			polynomialHash = 31 * polynomialHash + character;
+		}
+		if (repetition)
+		{
+			return false;
+		}
+		hash = TermDictionary.mix(polynomialHash);
+		return !isStopWord(length);
+	}
+
+	// the lowercase characters of the last accepted token, from index 0
+	public char[] getWord()
+	{
+		return word;
+	}
+
+	// the TermDictionary hash of the last accepted token
+	public int getHash()
+	{
+		return hash;
+	}
+
+	// whether the first length characters of word, whose hash is hash, are a stop word
+	private boolean isStopWord(int length)
+	{
+		if (displacements == null)
+		{
+			return stopWords.find(word, 0, length) != -1;
+		}
+		int slot        = slot(hash, displacements[hash & (displacements.length - 1)], slotWords.length);
+		char[] stopWord = slotWords[slot];
+		if (stopWord == null || slotHashes[slot] != hash || stopWord.length != length)
+		{
+			return false;
+		}
+		for (int i = 0; i < length; ++i)
+		{
+			if (stopWord[i] != word[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the displacement of every bucket of a perfect hash table of the specified words with the specified number of
+	// slots, a power of two, or null if no displacement of some bucket fits. there is a bucket for every four
+	// slots, and buckets are placed from the largest so that the hardest ones find the table emptiest
+	private static int[] buildTable(ArrayList<char[]> words, int tableSize)
+	{
+		// the hashes of the words grouped by bucket, those of a bucket being at bucketStarts[bucket] to
+		// bucketStarts[bucket + 1]
+		int bucketCount    = Math.max(1, tableSize / 4);
+		int[] bucketStarts = new int[bucketCount + 1];
+		for (char[] stopWord : words)
+		{
+			++bucketStarts[(TermDictionary.hash(stopWord, 0, stopWord.length) & (bucketCount - 1)) + 1];
+		}
+		for (int bucket = 0; bucket < bucketCount; ++bucket)
+		{
+			bucketStarts[bucket + 1] += bucketStarts[bucket];
+		}
+		int[] hashes = new int[words.size()];
+		int[] next   = Arrays.copyOf(bucketStarts, bucketCount);
+		for (char[] stopWord : words)
+		{
+			int stopWordHash = TermDictionary.hash(stopWord, 0, stopWord.length);
+			hashes[next[stopWordHash & (bucketCount - 1)]++] = stopWordHash;
+		}
+
+		final int[] sizes = new int[bucketCount];
+		Integer[] buckets = new Integer[bucketCount];
+		for (int bucket = 0; bucket < bucketCount; ++bucket)
+		{
+			sizes[bucket]   = bucketStarts[bucket + 1] - bucketStarts[bucket];
+			buckets[bucket] = bucket;
+		}
+		Arrays.sort(buckets, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer bucket1, Integer bucket2)
+			{
+				return sizes[bucket2] - sizes[bucket1];
+			}
+		});
+		int[] displacements = new int[bucketCount];
+		boolean[] used      = new boolean[tableSize];
+		for (int bucket : buckets)
+		{
+			if (sizes[bucket] == 0)
+			{
+				break;
+			}
+			int displacement = 0;
+			while (!fits(hashes, bucketStarts[bucket], bucketStarts[bucket + 1], displacement, used))
+			{
+				if (++displacement == MAX_DISPLACEMENT)
+				{
+					return null;
+				}
+			}
+			displacements[bucket] = displacement;
+		}
+		return displacements;
+	}
+
+	// whether the specified displacement sends the words with the hashes from start to end to distinct free slots,
+	// in which case those slots are marked used
+	private static boolean fits(int[] hashes, int start, int end, int displacement, boolean[] used)
+	{
+		for (int i = start; i < end; ++i)
+		{
+			int slot = slot(hashes[i], displacement, used.length);
+			if (used[slot])
+			{
+				for (int j = start; j < i; ++j)
+				{
+					used[slot(hashes[j], displacement, used.length)] = false;
+				}
+				return false;
+			}
+			used[slot] = true;
+		}
+		return true;
+	}
+
+	// the slot of a word with the specified hash in a table of the specified size for the specified displacement.
+	// the hash is remixed with the displacement so that the slots of the words of a bucket change independently
+	// from one displacement to the next
+	private static int slot(int hash, int displacement, int tableSize)
+	{
+		hash += displacement * 0x9E3779B9;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+		return hash & (tableSize - 1);
+	}
+
+	// whether the specified stop word can be an accepted token
+	private static boolean isLowercaseWord(char[] stopWord)
+	{
+		if (stopWord.length < SpamChecker.MIN_WORD_LENGTH || stopWord.length > SpamChecker.MAX_WORD_LENGTH)
+		{
+			return false;
+		}
+		for (char character : stopWord)
+		{
+			if ((character < 'a' || character > 'z') && character != '-')
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,80 @@
+package spamfilter.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spamfilter.BigramTable;
+import spamfilter.ClassifiedDocument;
+import spamfilter.SpamChecker;
+
+// SpamChecker.classifyDocument throughput, and its latency distribution in sample mode, cycling through the test
+// documents of a generated corpus, with and without bigram features. the memory taken by the bigrams of the model
+// is printed once it is trained
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassificationBenchmark
+{
+	@Param({"300", "3000"})
+	public int wordsPerDocument;
+
+	@Param({"false", "true"})
+	public boolean bigrams;
+
+	private Corpus corpus;
+	private SpamChecker checker;
+	private String[] documentPaths;
+	private int nextDocument;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		corpus            = Corpus.generate(1000, 1000, 256, wordsPerDocument);
+		checker           = new SpamChecker(corpus.getHamPath().toString(), corpus.getSpamPath().toString(),
+											corpus.getStopWordsPath().toString(), Runtime.getRuntime().availableProcessors(),
+											0, bigrams);
+		List<Path> paths  = corpus.getTestDocuments();
+		documentPaths     = new String[paths.size()];
+		for (int i = 0; i < documentPaths.length; ++i)
+		{
+			documentPaths[i] = paths.get(i).toString();
+		}
+		BigramTable bigramTable = checker.getModel().getBigrams();
+		if (bigramTable != null)
+		{
+			System.out.println("bigrams: " + bigramTable.size() + ", " + bigramTable.getMemoryUsage() + " bytes, "
+								+ checker.getModel().getVocabulary().size() + " words");
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		corpus.delete();
+	}
+
+	@Benchmark
+	public ClassifiedDocument classifyDocument()
+	{
+		nextDocument = (nextDocument + 1) % documentPaths.length;
+		return checker.classifyDocument(documentPaths[nextDocument]);
+	}
+}
@@ -0,0 +1,187 @@
+package spamfilter.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// a generated, reproducible corpus laid out the way SpamChecker expects it: ham and spam folders of training
+// documents, a folder of documents to classify and a stop words file, all in a temporary folder. word frequencies
+// follow a skewed distribution, and ham and spam favour different parts of a shared word list so that the
+// resulting model actually separates them
+public class Corpus
+{
+	public enum DocumentKind
+	{
+		PLAIN, HTML
+	}
+
+	private static final int DICTIONARY_SIZE = 20000;
+	private static final String[] STOP_WORDS = {"about", "after", "again", "also", "because", "before", "being",
+												"could", "every", "from", "have", "just", "more", "only", "other",
+												"should", "some", "than", "that", "their", "there", "these", "they",
+												"this", "very", "what", "when", "where", "which", "while", "with",
+												"would", "your"};
+	private final Path folder;
+	private final Random random;
+	private final String[] dictionary;
+
+	private Corpus(long seed) throws IOException
+	{
+		this.folder     = Files.createTempDirectory("spamfilter-corpus");
+		this.random     = new Random(seed);
+		this.dictionary = new String[DICTIONARY_SIZE];
+		for (int i = 0; i < DICTIONARY_SIZE; ++i)
+		{
+			dictionary[i] = randomWord();
+		}
+		Files.write(getStopWordsPath(), String.join("\n", STOP_WORDS).getBytes(StandardCharsets.UTF_8));
+	}
+
+	// generates a corpus of plain text documents with the specified number of documents in each folder
+	public static Corpus generate(int hamDocuments, int spamDocuments, int testDocuments, int wordsPerDocument)
+			throws IOException
+	{
+		Corpus corpus = new Corpus(42);
+		corpus.writeDocuments(corpus.getHamPath(), "HAM", hamDocuments, false, wordsPerDocument, DocumentKind.PLAIN);
+		corpus.writeDocuments(corpus.getSpamPath(), "SPAM", spamDocuments, true, wordsPerDocument, DocumentKind.PLAIN);
+		for (int i = 0; i < testDocuments; ++i)
+		{
+			boolean spam = corpus.random.nextBoolean();
+			corpus.writeDocument(corpus.getTestPath().resolve((spam ? "SPAM" : "HAM") + "-" + i + ".txt"), spam,
+									wordsPerDocument, DocumentKind.PLAIN);
+		}
+		return corpus;
+	}
+
+	// generates a corpus holding a single test document of the specified kind
+	public static Corpus generateDocument(DocumentKind kind, int words) throws IOException
+	{
+		Corpus corpus = new Corpus(42);
+		corpus.writeDocument(corpus.getTestPath().resolve("document.txt"), true, words, kind);
+		return corpus;
+	}
+
+	public Path getHamPath()
+	{
+		return folder.resolve("ham");
+	}
+
+	public Path getSpamPath()
+	{
+		return folder.resolve("spam");
+	}
+
+	public Path getTestPath()
+	{
+		return folder.resolve("test");
+	}
+
+	public Path getStopWordsPath()
+	{
+		return folder.resolve("stopwords.txt");
+	}
+
+	// a file in the corpus folder that is not part of the corpus, such as an exported model
+	public Path resolve(String fileName)
+	{
+		return folder.resolve(fileName);
+	}
+
+	// the paths of every test document, sorted by name
+	public List<Path> getTestDocuments() throws IOException
+	{
+		List<Path> returnList = new ArrayList<Path>();
+		try (Stream<Path> paths = Files.list(getTestPath()))
+		{
+			paths.sorted().forEach(returnList::add);
+		}
+		return returnList;
+	}
+
+	// deletes the corpus folder and everything in it
+	public void delete() throws IOException
+	{
+		try (Stream<Path> paths = Files.walk(folder))
+		{
+			for (Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator)
+			{
+				Files.delete(path);
+			}
+		}
+	}
+
+	private void writeDocuments(Path documentsFolder, String prefix, int count, boolean spam, int wordsPerDocument,
+			DocumentKind kind) throws IOException
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			writeDocument(documentsFolder.resolve(prefix + "-" + i + ".txt"), spam, wordsPerDocument, kind);
+		}
+	}
+
+	private void writeDocument(Path path, boolean spam, int words, DocumentKind kind) throws IOException
+	{
+		Files.createDirectories(path.getParent());
+		StringBuilder document = new StringBuilder("Subject: ");
+		for (int i = 0; i < words; ++i)
+		{
+			String word = nextWord(spam);
+			if (kind == DocumentKind.HTML)
+			{
+				switch (random.nextInt(6))
+				{
+					case 0:  document.append("<p>").append(word).append("</p>"); break;
+					case 1:  document.append("<a href=\"http://example.com/").append(word).append("?id=").append(i).append("\">").append(word).append("</a>"); break;
+					case 2:  document.append("<font color='#ff0000' face=\"Arial\">").append(word).append("</font>"); break;
+					case 3:  document.append(word).append("<br/>"); break;
+					default: document.append(word);
+				}
+			}
+			else
+			{
+				document.append(word);
+			}
+			document.append(random.nextInt(12) == 0 ? '\n' : ' ');
+		}
+		Files.write(path, document.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	// picks a word with a skewed distribution over the half of the dictionary favoured by the document class,
+	// with some punctuation, capitals and stop words mixed in
+	private String nextWord(boolean spam)
+	{
+		int roll = random.nextInt(20);
+		if (roll == 0)
+		{
+			return STOP_WORDS[random.nextInt(STOP_WORDS.length)];
+		}
+		double skewed = random.nextDouble();
+		int index     = (int)(skewed * skewed * skewed * (DICTIONARY_SIZE / 2));
+		String word   = dictionary[spam ? index : DICTIONARY_SIZE - 1 - index];
+		switch (roll)
+		{
+			case 1:  return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+			case 2:  return word + ",";
+			case 3:  return "\"" + word + "\"";
+			case 4:  return word + "'s";
+			default: return word;
+		}
+	}
+
+	private String randomWord()
+	{
+		int length = 3 + random.nextInt(10);
+		char[] word = new char[length];
+		for (int i = 0; i < length; ++i)
+		{
+			word[i] = (char)('a' + random.nextInt(26));
+		}
+		return new String(word);
+	}
+}
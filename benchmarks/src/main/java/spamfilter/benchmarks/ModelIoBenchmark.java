@@ -0,0 +1,78 @@
+package spamfilter.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spamfilter.SpamChecker;
+
+// exporting a trained model and loading it back into a new SpamChecker, in the text and the binary format
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelIoBenchmark
+{
+	@Param({"TEXT", "BINARY"})
+	public String format;
+
+	private Corpus corpus;
+	private SpamChecker checker;
+	private String exportPath;
+	private String modelPath;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		corpus     = Corpus.generate(2000, 2000, 0, 300);
+		checker    = new SpamChecker(corpus.getHamPath().toString(), corpus.getSpamPath().toString(),
+									corpus.getStopWordsPath().toString(), Runtime.getRuntime().availableProcessors());
+		exportPath = corpus.resolve("export.model").toString();
+		modelPath  = corpus.resolve("load.model").toString();
+		export(modelPath);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		corpus.delete();
+	}
+
+	@Benchmark
+	public void exportModel()
+	{
+		export(exportPath);
+	}
+
+	@Benchmark
+	public SpamChecker loadModel()
+	{
+		return new SpamChecker(modelPath);
+	}
+
+	private void export(String path)
+	{
+		if (format.equals("TEXT"))
+		{
+			checker.exportModelToTextFile(path);
+		}
+		else
+		{
+			checker.exportModelToBinaryFile(path);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package spamfilter.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import spamfilter.DocumentTokenizer;
+import spamfilter.FilteredDocument;
+import spamfilter.TokenSink;
+
+// FilteredDocument construction from a file and DocumentTokenizer on in-memory contents, for plain text and for tag
+// heavy HTML documents
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark
+{
+	@Param({"PLAIN", "HTML"})
+	public Corpus.DocumentKind documentKind;
+
+	@Param({"2000"})
+	public int wordsPerDocument;
+
+	private Corpus corpus;
+	private String documentPath;
+	private String documentContents;
+	private DocumentTokenizer tokenizer;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		corpus           = Corpus.generateDocument(documentKind, wordsPerDocument);
+		Path document    = corpus.getTestDocuments().get(0);
+		documentPath     = document.toString();
+		documentContents = new String(Files.readAllBytes(document), StandardCharsets.UTF_8);
+		tokenizer        = new DocumentTokenizer();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		corpus.delete();
+	}
+
+	@Benchmark
+	public FilteredDocument filteredDocument()
+	{
+		return new FilteredDocument(documentPath);
+	}
+
+	@Benchmark
+	public void tokenizeContents(final Blackhole blackhole)
+	{
+		tokenizer.tokenize(documentContents, new TokenSink()
+		{
+			@Override
+			public void acceptToken(char[] characters, int offset, int length)
+			{
+				blackhole.consume(length);
+			}
+		});
+	}
+}
@@ -0,0 +1,61 @@
+package spamfilter.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spamfilter.SpamChecker;
+
+// training a SpamChecker, which filters every dataset document and builds the vocabulary, at several corpus sizes,
+// with and without bigram features
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TrainingBenchmark
+{
+	// documents in each of the ham and spam folders
+	@Param({"200", "1000", "5000"})
+	public int documents;
+
+	@Param({"1", "4"})
+	public int parallelism;
+
+	@Param({"false", "true"})
+	public boolean bigrams;
+
+	private Corpus corpus;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		corpus = Corpus.generate(documents, documents, 0, 300);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		corpus.delete();
+	}
+
+	@Benchmark
+	public SpamChecker train()
+	{
+		return new SpamChecker(corpus.getHamPath().toString(), corpus.getSpamPath().toString(),
+								corpus.getStopWordsPath().toString(), parallelism, 0, bigrams);
+	}
+}
@@ -0,0 +1,112 @@
+package spamfilter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+// a model written with BinaryModelFormat must read back to the same model, and a damaged file must be refused
+class BinaryModelFormatTest
+{
+	@TempDir
+	static Path folder;
+
+	@BeforeAll
+	static void writeCorpus() throws IOException
+	{
+		TestCorpora.write(folder, 40, 11);
+	}
+
+	@Test
+	void modelSurvivesRoundTrip() throws IOException
+	{
+		assertRoundTrip(train(0), "words");
+	}
+
+	@Test
+	void hashedModelSurvivesRoundTrip() throws IOException
+	{
+		assertRoundTrip(train(64), "hashed");
+	}
+
+	@Test
+	void emptyModelSurvivesRoundTrip() throws IOException
+	{
+		Path model = folder.resolve("empty.bin");
+		BinaryModelFormat.write(model.toString(), new ModelSnapshot("ham", "spam", 0.5, 0.5, 0, 0, new Vocabulary()));
+		ModelSnapshot loaded = BinaryModelFormat.read(model.toString());
+		assertEquals(0, loaded.getVocabulary().size());
+		assertEquals("ham", loaded.getHamDatasetPath());
+		assertEquals("spam", loaded.getSpamDatasetPath());
+	}
+
+	@Test
+	void missingDatasetPathsStayMissing() throws IOException
+	{
+		Vocabulary vocabulary = new Vocabulary();
+		vocabulary.add("offer");
+		Path model = folder.resolve("no-paths.bin");
+		BinaryModelFormat.write(model.toString(), new ModelSnapshot(null, null, 0.5, 0.5, 1, 1, vocabulary));
+		ModelSnapshot loaded = BinaryModelFormat.read(model.toString());
+		assertNull(loaded.getHamDatasetPath());
+		assertNull(loaded.getSpamDatasetPath());
+	}
+
+	@Test
+	void corruptModelIsRefused() throws IOException
+	{
+		final Path model = folder.resolve("corrupt.bin");
+		train(0).exportModelToBinaryFile(model.toString());
+		byte[] contents = Files.readAllBytes(model);
+		contents[contents.length / 2] ^= 0x01;
+		Files.write(model, contents);
+		IOException e = assertThrows(IOException.class, new Executable()
+		{
+			public void execute() throws IOException
+			{
+				BinaryModelFormat.read(model.toString());
+			}
+		});
+		assertTrue(e.getMessage().contains("checksum mismatch"), e.getMessage());
+	}
+
+	// exports the model to a binary file, loads it back and compares the text exports of both
+	private static void assertRoundTrip(SpamChecker checker, String name) throws IOException
+	{
+		Path binaryModel = folder.resolve(name + ".bin");
+		checker.exportModelToBinaryFile(binaryModel.toString());
+		assertTrue(BinaryModelFormat.isBinaryModel(binaryModel.toString()));
+		SpamChecker loaded = new SpamChecker(binaryModel.toString());
+		Path expected      = folder.resolve(name + "-trained.txt");
+		Path actual        = folder.resolve(name + "-loaded.txt");
+		checker.exportModelToTextFile(expected.toString());
+		loaded.exportModelToTextFile(actual.toString());
+		assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(actual));
+		// the words of a loaded vocabulary must still be found and added to like those of a trained one
+		Vocabulary vocabulary = BinaryModelFormat.read(binaryModel.toString()).getVocabulary();
+		int size              = vocabulary.size();
+		assertTrue(size > 0);
+		if (vocabulary.getHashBuckets() == 0)
+		{
+			assertEquals(vocabulary.find("meeting"), vocabulary.add("meeting"));
+			assertEquals(size, vocabulary.add("neverseen"));
+			assertEquals(size, vocabulary.find("neverseen"));
+		}
+	}
+
+	private static SpamChecker train(int hashBuckets)
+	{
+		return new SpamChecker(folder.resolve(TestCorpora.HAM).toString(), folder.resolve(TestCorpora.SPAM).toString(),
+				folder.resolve(TestCorpora.STOP_WORDS_FILE).toString(), 1, hashBuckets);
+	}
+}
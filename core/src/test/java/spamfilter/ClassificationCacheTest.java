@@ -0,0 +1,90 @@
+package spamfilter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// a cached classification must always be the one the document would get without the cache
+class ClassificationCacheTest
+{
+	@TempDir
+	static Path folder;
+
+	private static SpamChecker uncached;
+
+	@BeforeAll
+	static void writeCorpus() throws IOException
+	{
+		TestCorpora.write(folder, 40, 17);
+		uncached = train();
+	}
+
+	@Test
+	void caseVariantsAreNotServedFromCache()
+	{
+		// the vocabulary is case-sensitive, so these score differently and must not share an entry
+		String[] documents = { "Monday meeting about the FREE offer", "monday MEETING about the free offer",
+							   "MONDAY Meeting about the Free Offer" };
+		assertNotEquals(score(uncached, documents[0]), score(uncached, documents[1]));
+		SpamChecker checker       = train();
+		ClassificationCache cache = new ClassificationCache(100, 0, TimeUnit.SECONDS);
+		checker.setClassificationCache(cache);
+		for (String document : documents)
+		{
+			assertEquals(score(uncached, document), score(checker, document), document);
+		}
+		assertEquals(0, cache.getHits());
+		assertEquals(documents.length, cache.getMisses());
+	}
+
+	@Test
+	void whitespaceVariantsAreServedFromCache()
+	{
+		String[] documents = { "free money for the winner", "free  money\tfor\nthe   winner", "free\r\nmoney for the winner" };
+		SpamChecker checker       = train();
+		ClassificationCache cache = new ClassificationCache(100, 0, TimeUnit.SECONDS);
+		checker.setClassificationCache(cache);
+		for (String document : documents)
+		{
+			assertEquals(score(uncached, document), score(checker, document), document);
+		}
+		assertEquals(documents.length - 1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted()
+	{
+		SpamChecker checker       = train();
+		ClassificationCache cache = new ClassificationCache(2, 0, TimeUnit.SECONDS);
+		checker.setClassificationCache(cache);
+		checker.classifyDocument("a", "project report");
+		checker.classifyDocument("b", "cash prize");
+		checker.classifyDocument("a", "project report");
+		checker.classifyDocument("c", "lottery winner");
+		checker.classifyDocument("b", "cash prize");
+		assertEquals(1, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(2, cache.getEvictions());
+		assertEquals(2, cache.size());
+	}
+
+	private static String score(SpamChecker checker, String document)
+	{
+		ClassifiedDocument classified = checker.classifyDocument("document", document);
+		return classified.getHamProbability() + " " + classified.getSpamProbability();
+	}
+
+	private static SpamChecker train()
+	{
+		return new SpamChecker(folder.resolve(TestCorpora.HAM).toString(), folder.resolve(TestCorpora.SPAM).toString(),
+				folder.resolve(TestCorpora.STOP_WORDS_FILE).toString());
+	}
+}
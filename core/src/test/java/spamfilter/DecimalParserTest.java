@@ -0,0 +1,127 @@
+package spamfilter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+// DecimalParser must return exactly what Integer.parseInt and Double.parseDouble return, and fail where they fail
+class DecimalParserTest
+{
+	private static final String[] DOUBLES = {
+		"0", "0.0", "-0.0", "+0.0", "00000.00000", "1", "-1", "+1", "0.1", "0.2", "0.3", "1.5", "3.141592653589793",
+		"1e0", "1E0", "1e+5", "1e-5", "1.0e10", "1e22", "1e23", "1e-22", "1e-23", "123456789012345678",
+		"1234567890123456789", "12345678901234567890", "123456789012345678901", "0.000000000000000000001",
+		"9007199254740991", "9007199254740992", "9007199254740993", "9007199254740994", "9007199254740995",
+		"4.9e-324", "2.4703282292062327e-324", "2.4703282292062328e-324", "1e-320", "1e-330", "1e-400",
+		"2.2250738585072011e-308", "2.2250738585072012e-308", "2.2250738585072014e-308", "1.7976931348623157e308",
+		"1.7976931348623158e308", "1.7976931348623159e308", "1e308", "1e309", "1e400", "7.2057594037927933e16",
+		"1.00000000000000011102230246251565404236316680908203125", "0.30000000000000004", "5e-324", "8.41e21",
+		"4.35679e-8", "2.718281828459045e-3", "1.", ".5", "-.5", "0.0001", "1e0000", "1e-0000"
+	};
+	private static final String[] INTS = {
+		"0", "-0", "+0", "1", "-1", "+7", "000000123", "123456789", "-123456789", "1234567890", "2147483647",
+		"-2147483648", "0000000000000042"
+	};
+	private static final String[] MALFORMED_DOUBLES = { "", "-", "+", ".", "e5", "1e", "1e+", "1x", "1.2.3", "--1" };
+	private static final String[] MALFORMED_INTS = { "", "-", "+", "1.0", "12a", "2147483648", "-2147483649", "1e3" };
+
+	@Test
+	void parsesDoublesLikeDoubleParseDouble()
+	{
+		for (String number : DOUBLES)
+		{
+			assertParsesDouble(number);
+		}
+	}
+
+	@Test
+	void parsesRandomDoublesLikeDoubleParseDouble()
+	{
+		Random random = new Random(3);
+		for (int i = 0; i < 100000; ++i)
+		{
+			double value;
+			switch (i % 3)
+			{
+			case 0:
+				value = Double.longBitsToDouble(random.nextLong());
+				break;
+			case 1:
+				value = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+				break;
+			default:
+				value = random.nextInt(1000000) / 1000.0;
+				break;
+			}
+			if (!Double.isNaN(value) && !Double.isInfinite(value))
+			{
+				assertParsesDouble(Double.toString(value));
+			}
+			// significands of every length up to 20 digits that are not the shortest representation of any double
+			long significand = random.nextLong() >>> random.nextInt(64);
+			assertParsesDouble(Long.toUnsignedString(significand) + "e" + (random.nextInt(700) - 350));
+		}
+	}
+
+	@Test
+	void parsesIntsLikeIntegerParseInt()
+	{
+		for (String number : INTS)
+		{
+			assertEquals(Integer.parseInt(number), DecimalParser.parseInt(bytes(number), 0, number.length()), number);
+		}
+	}
+
+	@Test
+	void parsesWithinBuffer()
+	{
+		ByteBuffer buffer = bytes("word   12   0.25   x");
+		assertEquals(12, DecimalParser.parseInt(buffer, 7, 9));
+		assertEquals(0.25, DecimalParser.parseDouble(buffer, 12, 16));
+	}
+
+	@Test
+	void rejectsMalformedNumbers()
+	{
+		for (final String number : MALFORMED_DOUBLES)
+		{
+			assertThrows(NumberFormatException.class, new Executable()
+			{
+				public void execute()
+				{
+					DecimalParser.parseDouble(bytes(number), 0, number.length());
+				}
+			}, number);
+		}
+		for (final String number : MALFORMED_INTS)
+		{
+			assertThrows(NumberFormatException.class, new Executable()
+			{
+				public void execute()
+				{
+					DecimalParser.parseInt(bytes(number), 0, number.length());
+				}
+			}, number);
+		}
+	}
+
+	// compares the bits, so that -0.0 is told apart from 0.0
+	private static void assertParsesDouble(String number)
+	{
+		double expected = Double.parseDouble(number);
+		double actual   = DecimalParser.parseDouble(bytes(number), 0, number.length());
+		assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual),
+				number + ": expected " + expected + " but was " + actual);
+	}
+
+	private static ByteBuffer bytes(String string)
+	{
+		return ByteBuffer.wrap(string.getBytes(StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,116 @@
+package spamfilter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// MailCorpus must tell the formats apart and split an mbox file into the messages between its "From " lines
+class MailCorpusTest
+{
+	@TempDir
+	Path folder;
+
+	@Test
+	void splitsMboxFile() throws IOException
+	{
+		Path mbox = folder.resolve("ham.mbox");
+		write(mbox, "\n\r\n"
+				+ "From alice@example.com Mon Jan  1 00:00:00 2024\n"
+				+ "Subject: lunch\n\nlunch on Friday?\n"
+				+ "From bob@example.com Mon Jan  1 00:01:00 2024\n"
+				+ "Subject: quote\n\n>From the report: not a new message\nsee you From the office\n"
+				+ "From carol@example.com Mon Jan  1 00:02:00 2024\n"
+				+ "Subject: last\n\nno newline at the end");
+		MailCorpus corpus = MailCorpus.open(mbox.toString());
+		assertEquals(MailCorpus.Format.MBOX, corpus.getFormat());
+		MailMessage[] messages = corpus.list();
+		assertEquals(3, messages.length);
+		String name = mbox.toAbsolutePath().toString();
+		for (int i = 0; i < messages.length; ++i)
+		{
+			assertEquals(name + "#" + i, messages[i].getName());
+		}
+		assertEquals("Subject: lunch\n\nlunch on Friday?\n", contents(messages[0]));
+		assertEquals("Subject: quote\n\n>From the report: not a new message\nsee you From the office\n",
+				contents(messages[1]));
+		assertEquals("Subject: last\n\nno newline at the end", contents(messages[2]));
+	}
+
+	@Test
+	void keepsTextBeforeFirstFromLine() throws IOException
+	{
+		Path mbox = folder.resolve("headless.mbox");
+		write(mbox, "a message with no From line\nFrom x Mon Jan  1 00:00:00 2024\nsecond\n");
+		MailMessage[] messages = MailCorpus.open(mbox.toString()).list();
+		assertEquals(2, messages.length);
+		assertEquals("a message with no From line\n", contents(messages[0]));
+		assertEquals("second\n", contents(messages[1]));
+	}
+
+	@Test
+	void emptyMboxHasNoMessages() throws IOException
+	{
+		Path mbox = folder.resolve("empty.mbox");
+		write(mbox, "");
+		assertEquals(0, MailCorpus.open(mbox.toString()).list().length);
+	}
+
+	@Test
+	void walksMaildirSkippingTmp() throws IOException
+	{
+		Path maildir = folder.resolve("maildir");
+		write(maildir.resolve("cur").resolve("1.msg"), "first");
+		write(maildir.resolve("new").resolve("2.msg"), "second");
+		write(maildir.resolve("tmp").resolve("3.msg"), "still being delivered");
+		write(maildir.resolve("archive").resolve("cur").resolve("4.msg"), "archived");
+		MailCorpus corpus = MailCorpus.open(maildir.toString());
+		assertEquals(MailCorpus.Format.MAILDIR, corpus.getFormat());
+		MailMessage[] messages = corpus.list();
+		String[] contents      = new String[messages.length];
+		for (int i = 0; i < messages.length; ++i)
+		{
+			contents[i] = contents(messages[i]);
+		}
+		Arrays.sort(contents);
+		assertEquals(Arrays.asList("archived", "first", "second"), Arrays.asList(contents));
+	}
+
+	@Test
+	void readsFolderOfDocuments() throws IOException
+	{
+		Path documents = folder.resolve("documents");
+		write(documents.resolve("HAM-0000.txt"), "one");
+		write(documents.resolve("HAM-0001.txt"), "two");
+		MailCorpus corpus = MailCorpus.open(documents.toString());
+		assertEquals(MailCorpus.Format.FOLDER, corpus.getFormat());
+		MailMessage[] messages = corpus.list();
+		assertEquals(2, messages.length);
+		for (MailMessage message : messages)
+		{
+			assertTrue(message.getPath().startsWith(documents));
+		}
+	}
+
+	private static void write(Path file, String contents) throws IOException
+	{
+		Files.createDirectories(file.getParent());
+		Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String contents(MailMessage message) throws IOException
+	{
+		ByteBuffer contents = message.getContents();
+		byte[] bytes        = new byte[contents.remaining()];
+		contents.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,113 @@
+package spamfilter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+// training on fork/join workers must give the same model as training on the calling thread, see WordCountTask
+class ParallelTrainingTest
+{
+	// well over the documents a fork/join leaf counts on its own, so the datasets are split several times
+	private static final int DOCUMENTS_PER_CLASS = 120;
+
+	@TempDir
+	static Path folder;
+
+	@BeforeAll
+	static void writeCorpus() throws IOException
+	{
+		TestCorpora.write(folder, DOCUMENTS_PER_CLASS, 42);
+	}
+
+	@Test
+	void parallelModelEqualsSequentialModel() throws IOException
+	{
+		byte[] sequential = exportTextModel(1, 0, false);
+		assertTrue(sequential.length > 0);
+		for (int parallelism : new int[] { 2, 4, 8 })
+		{
+			assertArrayEquals(sequential, exportTextModel(parallelism, 0, false), "parallelism " + parallelism);
+		}
+	}
+
+	@Test
+	void parallelHashedModelEqualsSequentialModel() throws IOException
+	{
+		byte[] sequential = exportTextModel(1, 64, false);
+		assertArrayEquals(sequential, exportTextModel(4, 64, false));
+	}
+
+	@Test
+	void parallelBigramModelScoresLikeSequentialModel()
+	{
+		// the bigrams are not part of the model files, so the models are compared on the scores they give
+		SpamChecker sequential = new SpamChecker(hamPath(), spamPath(), stopWordsPath(), 1, 0, true);
+		SpamChecker parallel   = new SpamChecker(hamPath(), spamPath(), stopWordsPath(), 4, 0, true);
+		Random random          = new Random(7);
+		for (int i = 0; i < 20; ++i)
+		{
+			String document             = (i % 2 == 0) ? TestCorpora.hamDocument(random) : TestCorpora.spamDocument(random);
+			ClassifiedDocument expected = sequential.classifyDocument("document-" + i, document);
+			ClassifiedDocument actual   = parallel.classifyDocument("document-" + i, document);
+			assertEquals(expected.getHamProbability(), actual.getHamProbability());
+			assertEquals(expected.getSpamProbability(), actual.getSpamProbability());
+		}
+	}
+
+	@Test
+	void unreadableDocumentFailsTraining() throws IOException
+	{
+		Path ham = folder.resolve("unreadable-ham");
+		Files.createDirectories(ham);
+		Files.write(ham.resolve("HAM-0000.txt"), "meeting notes for the project".getBytes());
+		// a dangling link is listed with the documents but cannot be opened
+		Files.createSymbolicLink(ham.resolve("HAM-0001.txt"), folder.resolve("missing.txt"));
+		for (int parallelism : new int[] { 1, 4 })
+		{
+			final int threads = parallelism;
+			assertThrows(UncheckedIOException.class, new Executable()
+			{
+				public void execute()
+				{
+					new SpamChecker(ham.toString(), spamPath(), stopWordsPath(), threads);
+				}
+			}, "parallelism " + parallelism);
+		}
+	}
+
+	private static byte[] exportTextModel(int parallelism, int hashBuckets, boolean bigrams) throws IOException
+	{
+		SpamChecker checker = new SpamChecker(hamPath(), spamPath(), stopWordsPath(), parallelism, hashBuckets,
+				bigrams);
+		Path model          = folder.resolve("model-" + parallelism + "-" + hashBuckets + ".txt");
+		checker.exportModelToTextFile(model.toString());
+		return Files.readAllBytes(model);
+	}
+
+	private static String hamPath()
+	{
+		return folder.resolve(TestCorpora.HAM).toString();
+	}
+
+	private static String spamPath()
+	{
+		return folder.resolve(TestCorpora.SPAM).toString();
+	}
+
+	private static String stopWordsPath()
+	{
+		return folder.resolve(TestCorpora.STOP_WORDS_FILE).toString();
+	}
+}
@@ -0,0 +1,91 @@
+package spamfilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// writes small deterministic ham and spam datasets and a stop words file for the tests to train on. every document
+// mixes common words with words of its own class, so the model has words seen in one class only, words seen in both
+// and words too rare to be kept
+class TestCorpora
+{
+	private static final String[] COMMON_WORDS = {
+		"the", "and", "you", "for", "this", "with", "have", "your", "from", "will", "about", "today", "just", "more",
+		"time", "week", "please", "thanks", "here", "there"
+	};
+	private static final String[] HAM_WORDS = {
+		"meeting", "project", "report", "schedule", "review", "lunch", "family", "weekend", "notes", "draft",
+		"budget", "agenda", "Monday", "Friday", "colleague", "deadline", "attached", "minutes", "team", "office"
+	};
+	private static final String[] SPAM_WORDS = {
+		"free", "winner", "money", "offer", "cash", "prize", "click", "credit", "cheap", "viagra", "bonus",
+		"guaranteed", "FREE", "discount", "casino", "lottery", "investment", "urgent", "unsubscribe", "deal"
+	};
+	private static final String[] STOP_WORDS = { "the", "and", "for", "with" };
+
+	static final String HAM = "ham";
+	static final String SPAM = "spam";
+	static final String STOP_WORDS_FILE = "stopwords.txt";
+
+	// writes documentsPerClass ham files to folder/ham, as many spam files to folder/spam and the stop words to
+	// folder/stopwords.txt
+	static void write(Path folder, int documentsPerClass, long seed) throws IOException
+	{
+		Random random = new Random(seed);
+		writeDocuments(folder.resolve(HAM), "HAM", HAM_WORDS, documentsPerClass, random);
+		writeDocuments(folder.resolve(SPAM), "SPAM", SPAM_WORDS, documentsPerClass, random);
+		Files.write(folder.resolve(STOP_WORDS_FILE), String.join("\n", STOP_WORDS).getBytes(StandardCharsets.UTF_8));
+	}
+
+	// a document of the specified class, made of 20 to 80 words
+	static String document(String[] classWords, Random random)
+	{
+		StringBuilder document = new StringBuilder();
+		int length             = 20 + random.nextInt(61);
+		for (int i = 0; i < length; ++i)
+		{
+			if (i != 0)
+			{
+				document.append((i % 12 == 0) ? ".\n" : " ");
+			}
+			int choice = random.nextInt(10);
+			if (choice < 4)
+			{
+				document.append(COMMON_WORDS[random.nextInt(COMMON_WORDS.length)]);
+			}
+			else if (choice < 9)
+			{
+				document.append(classWords[random.nextInt(classWords.length)]);
+			}
+			else
+			{
+				// a word rare enough to fall under MIN_WORD_FREQUENCY most of the time
+				document.append("rare").append(random.nextInt(500));
+			}
+		}
+		return document.toString();
+	}
+
+	static String hamDocument(Random random)
+	{
+		return document(HAM_WORDS, random);
+	}
+
+	static String spamDocument(Random random)
+	{
+		return document(SPAM_WORDS, random);
+	}
+
+	private static void writeDocuments(Path folder, String prefix, String[] classWords, int count, Random random)
+			throws IOException
+	{
+		Files.createDirectories(folder);
+		for (int i = 0; i < count; ++i)
+		{
+			String name = String.format("%s-%04d.txt", prefix, i);
+			Files.write(folder.resolve(name), document(classWords, random).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
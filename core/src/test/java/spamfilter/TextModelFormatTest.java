@@ -0,0 +1,114 @@
+package spamfilter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// a text model read by TextModelFormat, on one thread or several, must be the model SpamChecker.parseModel reads
+class TextModelFormatTest
+{
+	@TempDir
+	Path folder;
+
+	@Test
+	void modelSurvivesRoundTrip() throws IOException
+	{
+		TestCorpora.write(folder, 40, 5);
+		SpamChecker checker = new SpamChecker(folder.resolve(TestCorpora.HAM).toString(),
+				folder.resolve(TestCorpora.SPAM).toString(), folder.resolve(TestCorpora.STOP_WORDS_FILE).toString());
+		Path trained        = folder.resolve("trained.txt");
+		Path loaded         = folder.resolve("loaded.txt");
+		checker.exportModelToTextFile(trained.toString());
+		new SpamChecker(trained.toString()).exportModelToTextFile(loaded.toString());
+		assertArrayEquals(Files.readAllBytes(trained), Files.readAllBytes(loaded));
+	}
+
+	@Test
+	void parallelParseEqualsSequentialParse() throws IOException
+	{
+		// several times the smallest chunk the parser splits a model into
+		Path model = writeModel(60000, 0);
+		assertTrue(Files.size(model) > 4 * 1024 * 1024);
+		ModelSnapshot expected = SpamChecker.parseModel(model.toString());
+		for (int parallelism : new int[] { 1, 3, 8 })
+		{
+			assertSameModel(expected, TextModelFormat.read(model.toString(), parallelism));
+		}
+	}
+
+	@Test
+	void hashedModelParsesLikeSequentialParse() throws IOException
+	{
+		Path model = writeModel(1000, 4096);
+		assertSameModel(SpamChecker.parseModel(model.toString()), TextModelFormat.read(model.toString(), 4));
+	}
+
+	// writes a model of the specified number of words in the text format
+	private Path writeModel(int words, int hashBuckets) throws IOException
+	{
+		Path model            = folder.resolve("model-" + words + ".txt");
+		Random random         = new Random(words);
+		BufferedWriter writer = Files.newBufferedWriter(model, StandardCharsets.UTF_8);
+		try
+		{
+			writer.write("/data/ham   /data/spam   0.4   0.6   " + ((hashBuckets != 0) ? hashBuckets + "   " : ""));
+			for (int i = 0; i < words; ++i)
+			{
+				writer.newLine();
+				String word = (hashBuckets != 0) ? "#" + i : "word" + i + ((i % 7 == 0) ? "été" : "");
+				writer.write((i + 1) + "   " + word + "   " + random.nextInt(1000) + "   " + probability(random)
+						+ "   " + random.nextInt(1000) + "   " + probability(random));
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+		return model;
+	}
+
+	private static String probability(Random random)
+	{
+		return Double.toString(Math.pow(10, -8 * random.nextDouble()) * random.nextDouble());
+	}
+
+	private static void assertSameModel(ModelSnapshot expected, ModelSnapshot actual)
+	{
+		assertEquals(expected.getHamDatasetPath(), actual.getHamDatasetPath());
+		assertEquals(expected.getSpamDatasetPath(), actual.getSpamDatasetPath());
+		assertEquals(expected.getHamProbability(), actual.getHamProbability());
+		assertEquals(expected.getSpamProbability(), actual.getSpamProbability());
+		Vocabulary expectedWords = expected.getVocabulary();
+		Vocabulary actualWords   = actual.getVocabulary();
+		assertEquals(expectedWords.size(), actualWords.size());
+		assertEquals(expectedWords.getHashBuckets(), actualWords.getHashBuckets());
+		// both add the words in the order of the file, so a word has the same id in both
+		for (int id = 0; id < expectedWords.size(); ++id)
+		{
+			String word = expectedWords.getWord(id);
+			assertEquals(word, actualWords.getWord(id));
+			if (actualWords.getHashBuckets() == 0)
+			{
+				assertEquals(id, actualWords.find(word), word);
+			}
+			assertEquals(expectedWords.getHamFrequency(id), actualWords.getHamFrequency(id), word);
+			assertEquals(expectedWords.getSpamFrequency(id), actualWords.getSpamFrequency(id), word);
+			assertEquals(expectedWords.getHamConditionalProbability(id),
+					actualWords.getHamConditionalProbability(id), word);
+			assertEquals(expectedWords.getSpamConditionalProbability(id),
+					actualWords.getSpamConditionalProbability(id), word);
+			assertEquals(expectedWords.getHamLogProbability(id), actualWords.getHamLogProbability(id), word);
+			assertEquals(expectedWords.getSpamLogProbability(id), actualWords.getSpamLogProbability(id), word);
+		}
+	}
+}